@@ -5,11 +5,15 @@ import com.osiris.dyml.Yaml;
 import com.osiris.dyml.YamlSection;
 import com.osiris.dyml.exceptions.*;
 
+import java.io.File;
 import java.io.IOException;
 
 
 public class Config extends Yaml {
-    public YamlSection keep_removed, profile, async, spigotUsername, spigotPassword, spigotUsernameOld, spigotPasswordOld;
+    public YamlSection keep_removed, profile, checkInterval, async, asyncThreads, scanThreads, scanCacheHash, spigotUsername, spigotPassword,
+            premiumPersistentProfile, premiumBrowserless, premiumWindows,
+            spigotIndex, deltaSync,
+            httpConnectTimeout, httpReadTimeout, httpMaxIdleConnections, httpMaxRequestsPerHost, httpRequestsPerSecond, httpBurst, httpRateLimitRetries, httpCacheSize, downloadRetries, downloadStore;
 
     public Config(String file) throws IOException, DuplicateKeyException, IllegalListException, NotLoadedException, IllegalKeyException, YamlReaderException {
         super(file);
@@ -27,7 +31,7 @@ public class Config extends Yaml {
                         "bukkit-id: Is the 'Project-ID' and can be found on the plugins bukkit site inside of the 'About' box at the right.\n" +
                         "custom-check-url (FEATURE NOT WORKING YET): must link to a yaml or json file that contains at least these fields: name, author, version (of the plugin)\n" +
                         "custom-download-url: must be a static url to the plugins latest jar file" +
-                        "If a spigot-id is not given, AutoPlug will try and find the matching id by using its unique search-algorithm (if it succeeds the spigot-id gets set, else it stays 0).\n" +
+                        "If a spigot-id is not given, AutoPlug will try and find the matching id by using its unique search-algorithm. Found ids are remembered in the " + GD.SPPU_DIR.getName() + "/state.log file, thus the spigot-id here stays 0.\n" +
                         "If both (bukkit and spigot) ids are provided, the spigot-id will be used.\n" +
                         "The configuration for uninstalled plugins wont be removed from this file, but they are automatically excluded from future checks (the exclude value is ignored).\n" +
                         "If multiple authors are provided, only the first author will be used by the search-algorithm.\n" +
@@ -41,15 +45,92 @@ public class Config extends Yaml {
                         "NOTIFY: Shows you a list of updatable plugins with their download urls.\n" +
                         "MANUAL: Download plugins updates into the " + GD.SPPU_DOWNLOADS_DIR + " directory\n" +
                         "AUTOMATIC: Downloads and installs plugins updates directly into /plugins\n");
+        checkInterval = this.put(name, "general", "check-interval").setDefValues("0")
+                .setComments("Minutes between plugin checks. If bigger than 0, SPPU keeps running and checks the plugins periodically,",
+                        "which is way cheaper than starting it again each time, since connections and caches are kept between checks.",
+                        "0 checks once and exits. Starting SPPU with the 'daemon' argument and 0 here, checks every 60 minutes.");
         async = this.put(name, "general", "async").setDefValues("true")
                 .setComments("Check for updates asynchronously? It's faster when enabled, but the logs are more messy.");
+        asyncThreads = this.put(name, "general", "async-threads").setDefValues("8")
+                .setComments("Maximum amount of plugins that get checked at the same time, if async is enabled.",
+                        "0 uses two threads per available CPU core.");
+        scanThreads = this.put(name, "general", "scan-threads").setDefValues("0")
+                .setComments("The amount of threads used to read the plugin jars in /plugins at the same time.",
+                        "0 uses one thread per available CPU core, 1 reads the jars one after another.");
+        scanCacheHash = this.put(name, "general", "scan-cache-hash").setDefValues("false")
+                .setComments("Details of unchanged plugin jars are taken from the " + GD.SPPU_DIR.getName() + "/plugins-scan-cache.json file, instead of reading the jar again.",
+                        "A jar counts as unchanged if its path, size and last modified time didn't change.",
+                        "Set this to true, to also compare the jars SHA-256 hash. This is safer, but means that each jar gets read completely again.");
         spigotUsername = this.put(name, "general", "spigotmc.org-username").setDefValues("INSERT_USERNAME_HERE");
         spigotPassword = this.put(name, "general", "spigotmc.org-password").setDefValues("INSERT_PASSWORD_HERE");
-        spigotUsernameOld = this.put(name, "general", "spigotmc.org-username-old")
-                .setComments("Don't insert a value for this, nor change it.",
-                        "This stores the older username, so that SPPU knows when you changed the actual username and can login with the new username.");
-        spigotPasswordOld = this.put(name, "general", "spigotmc.org-password-old")
-                .setComments("Don't insert a value for this, nor change it.",
-                        "This stores the older password, so that SPPU knows when you changed the actual password and can login with the new password.");
+
+        premiumPersistentProfile = this.put(name, "premium", "persistent-browser-profile").setDefValues("true")
+                .setComments("Keep the browsers profile (cookies, cloudflare clearance, etc.) between runs?",
+                        "If enabled, the login and cloudflare check can mostly be skipped, as long as the session is still valid.",
+                        "The profile is stored in SPPU/browser-profile.",
+                        "Only one SPPU instance can use the profile at a time, others fall back to a temporary profile.");
+        premiumBrowserless = this.put(name, "premium", "browserless").setDefValues("true")
+                .setComments("Try to update premium plugins without opening a browser, by sending the cookies of the last login with plain HTTP requests?",
+                        "The browser only gets opened if that fails, for example because the session expired or cloudflare wants to check the browser.");
+        premiumWindows = this.put(name, "premium", "windows").setDefValues("2")
+                .setComments("Maximum amount of browser windows that update premium plugins in parallel.",
+                        "Each window is a separate browser, which uses a bit of memory. The additional windows get the login and",
+                        "cloudflare cookies of the first window, thus only the first one logs in.");
+
+        spigotIndex = this.put(name, "search", "local-index").setDefValues("false")
+                .setComments("Find plugins without spigot-id in a local index of all spigot resources, instead of searching for them online?",
+                        "The index gets stored in " + GD.SPPU_DIR.getName() + "/spigot-index.bin and refreshed every hour, with only the resources updated in the meantime.",
+                        "Its first download takes a few minutes, after that plugins are found way faster and with fewer requests.");
+        deltaSync = this.put(name, "search", "delta-sync").setDefValues("false")
+                .setComments("Only check spigot plugins, whose resource was updated since the last run?",
+                        "The updated resources are fetched with one or two requests, instead of one request per plugin.",
+                        "The results of the other plugins are reused from " + GD.SPPU_DIR.getName() + "/delta-sync.json, which are rechecked at least once a week.");
+
+        httpConnectTimeout = this.put(name, "network", "connect-timeout").setDefValues("10")
+                .setComments("All requests share one HTTP client, which keeps connections open and reuses them.",
+                        "Seconds to wait for a connection to be established.");
+        httpReadTimeout = this.put(name, "network", "read-timeout").setDefValues("30")
+                .setComments("Seconds to wait for data, before a request or download fails.");
+        httpMaxIdleConnections = this.put(name, "network", "max-idle-connections").setDefValues("16")
+                .setComments("Maximum amount of idle connections kept open for reuse.");
+        httpMaxRequestsPerHost = this.put(name, "network", "max-requests-per-host").setDefValues("4")
+                .setComments("Maximum amount of requests sent to the same host (for example api.spiget.org) at the same time.",
+                        "0 disables this limit.");
+        httpRequestsPerSecond = this.put(name, "network", "requests-per-second").setDefValues("5")
+                .setComments("Average amount of requests per second sent to the same host. Short bursts above this are allowed.",
+                        "0 disables this limit.");
+        httpBurst = this.put(name, "network", "burst").setDefValues("10")
+                .setComments("Maximum amount of requests sent to the same host at once, before the requests-per-second limit kicks in.");
+        httpRateLimitRetries = this.put(name, "network", "rate-limit-retries").setDefValues("3")
+                .setComments("How often a request gets retried, if the server responds that too many requests were sent.",
+                        "All requests to that server wait as long as it asks for (Retry-After header), or an increasing, random delay.");
+        httpCacheSize = this.put(name, "network", "cache-size").setDefValues("50")
+                .setComments("Maximum size in megabytes of the " + GD.SPPU_DIR.getName() + "/http-cache directory, which stores responses from api.spiget.org.",
+                        "Cached responses are revalidated with the server, which is way faster and doesn't use up the api quota, if nothing changed.",
+                        "0 disables the cache.");
+        downloadRetries = this.put(name, "network", "download-retries").setDefValues("3")
+                .setComments("How often a failed download gets retried. Retries continue where the failed attempt stopped, if the server supports it.");
+        downloadStore = this.put(name, "network", "download-store").setDefValues("")
+                .setComments("Directory in which downloaded plugin jars are stored by their SHA-256 hash. Empty by default, which disables the store.",
+                        "Multiple servers on the same machine can share this directory. A plugin version that is already in it",
+                        "gets installed with a hard link (or a copy) instead of being downloaded again.",
+                        "Only downloads that matched the size the api reported for their version are stored.",
+                        "Example: " + System.getProperty("user.home") + File.separator + ".SPPU" + File.separator + "store");
+    }
+
+    /**
+     * Returns true if at least one setting is missing in the file (for example, because it was added by an SPPU update),
+     * which means that the file should be saved, so that the user can see and edit it.
+     */
+    public boolean hasMissingSettings() {
+        YamlSection[] settings = {keep_removed, profile, checkInterval, async, asyncThreads, scanThreads, scanCacheHash, spigotUsername, spigotPassword,
+                premiumPersistentProfile, premiumBrowserless, premiumWindows,
+                spigotIndex, deltaSync,
+                httpConnectTimeout, httpReadTimeout, httpMaxIdleConnections, httpMaxRequestsPerHost, httpRequestsPerSecond, httpBurst, httpRateLimitRetries, httpCacheSize, downloadRetries}; // Not downloadStore, since its empty default looks the same as a missing value
+        for (YamlSection setting :
+                settings) {
+            if (setting.getValues().isEmpty()) return true; // Only the default value exists
+        }
+        return false;
     }
 }
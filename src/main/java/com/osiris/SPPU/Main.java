@@ -22,12 +22,15 @@ import static com.osiris.SPPU.utils.GD.CONFIG;
 import static com.osiris.SPPU.utils.GD.SPPU_DIR;
 
 public class Main {
+    private static final long DEFAULT_DAEMON_INTERVAL_MINUTES = 60;
     public static boolean isDEBUG;
+    public static boolean isDaemon;
 
     public static void main(String[] args) throws NotLoadedException, IOException, IllegalKeyException, DuplicateKeyException, IllegalListException, JLineLinkException, InterruptedException, YamlReaderException, YamlWriterException {
         for (String arg :
                 args) {
             if (arg.equals("debug")) isDEBUG = true;
+            else if (arg.equals("daemon")) isDaemon = true;
         }
         new AL().start("SPPU", isDEBUG, new File(SPPU_DIR + "/logs"), false);
         CONFIG = new Config(SPPU_DIR + "/config.yml");
@@ -55,6 +58,39 @@ public class Main {
             System.out.println();
             System.out.println("Setup completed!");
         }
+
+        if (getCheckIntervalMinutes() <= 0) {
+            new Main().runCheck();
+            return;
+        }
+
+        // Daemon mode: Keep running and check again after each interval.
+        // The http client, caches and the plugins scan cache stay in memory between checks.
+        AL.info("Running in daemon mode. Checking plugins every " + getCheckIntervalMinutes() + " minute(s).");
+        while (true) {
+            long start = System.currentTimeMillis();
+            try {
+                new Main().runCheck();
+            } catch (Exception e) {
+                AL.warn("Error during plugins check. Retrying at the next interval.", e);
+            }
+            long intervalMinutes = getCheckIntervalMinutes(); // The config gets reloaded by each check
+            if (intervalMinutes <= 0) return;
+            long sleep = start + intervalMinutes * 60000 - System.currentTimeMillis();
+            if (sleep > 0) {
+                AL.info("Next check in " + (sleep + 59999) / 60000 + " minute(s).");
+                Thread.sleep(sleep);
+            }
+        }
+    }
+
+    private static long getCheckIntervalMinutes() {
+        long intervalMinutes = CONFIG.checkInterval.asString() != null ? CONFIG.checkInterval.asInt() : 0;
+        if (isDaemon && intervalMinutes <= 0) intervalMinutes = DEFAULT_DAEMON_INTERVAL_MINUTES;
+        return intervalMinutes;
+    }
+
+    private void runCheck() throws JLineLinkException, InterruptedException {
         BThreadManager manager = new BThreadManager();
         BThreadPrinter displayer = new BThreadPrinter(manager);
         displayer.start();
@@ -63,7 +99,7 @@ public class Main {
         while (displayer.isAlive()) // Wait until the rest is finished
             Thread.sleep(1000);
 
-        new Main().writeAndPrintResults(manager.getAll());
+        writeAndPrintResults(manager.getAll());
     }
 
     private void writeAndPrintResults(List<BThread> all) {
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2021 Osiris-Team.
+ * All rights reserved.
+ *
+ * This software is copyrighted work, licensed under the terms
+ * of the MIT-License. Consult the "LICENSE" file for details.
+ */
+
+package com.osiris.SPPU.plugins;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Exclusive lock on the persistent browser profile. <br>
+ * A browser profile can only be used by one browser at a time, thus
+ * only the SPPU instance holding this lock may open a window with the persistent profile.
+ * The lock file lives inside the profile directory, thus the lock always belongs to the directory the browser actually uses.
+ * The lock gets released automatically if the process dies.
+ */
+public class BrowserProfileLock implements AutoCloseable {
+    private static final String LOCK_FILE_NAME = "sppu-profile.lock";
+    private final File profileDir;
+    private final FileChannel channel;
+    private final FileLock lock;
+
+    private BrowserProfileLock(File profileDir, FileChannel channel, FileLock lock) {
+        this.profileDir = profileDir;
+        this.channel = channel;
+        this.lock = lock;
+    }
+
+    /**
+     * Returns the lock for the provided browser profile directory (user data directory),
+     * or null if it is held by another process. The directory gets created if needed.
+     */
+    @Nullable
+    public static BrowserProfileLock tryAcquire(@NotNull File profileDir) throws IOException {
+        if (!profileDir.exists() && !profileDir.mkdirs())
+            throw new IOException("Failed to create the browser profile directory at: " + profileDir);
+        File lockFile = new File(profileDir, LOCK_FILE_NAME);
+        FileChannel channel = FileChannel.open(lockFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock lock;
+        try {
+            lock = channel.tryLock();
+        } catch (Exception e) {
+            channel.close();
+            throw e;
+        }
+        if (lock == null) {
+            channel.close();
+            return null;
+        }
+        return new BrowserProfileLock(profileDir, channel, lock);
+    }
+
+    /**
+     * The locked profile directory, which should be passed to the browser as its user data directory.
+     */
+    @NotNull
+    public File getProfileDir() {
+        return profileDir;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            lock.release();
+        } finally {
+            channel.close();
+        }
+    }
+}
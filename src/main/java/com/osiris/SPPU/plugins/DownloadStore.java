@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2021 Osiris-Team.
+ * All rights reserved.
+ *
+ * This software is copyrighted work, licensed under the terms
+ * of the MIT-License. Consult the "LICENSE" file for details.
+ */
+
+package com.osiris.SPPU.plugins;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import com.osiris.SPPU.utils.GD;
+import com.osiris.SPPU.utils.UtilsFiles;
+import com.osiris.autoplug.core.logger.AL;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.lang.reflect.Type;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Content-addressed store for downloaded plugin jars, which can be shared by all servers on the same machine. <br>
+ * Each jar is stored once, named by its SHA-256 hash, and an index maps each download (url and version) to that hash.
+ * A download that is already in the store gets installed with a hard link (or a copy, if linking is not possible)
+ * instead of being downloaded again.
+ */
+public class DownloadStore {
+    private static final Type INDEX_TYPE = new TypeToken<Map<String, String>>() {
+    }.getType();
+    private static DownloadStore instance;
+    private static boolean isInstanceLoaded;
+    private final File dir;
+    private final File objectsDir;
+    private final File indexFile;
+    private final File lockFile;
+
+    public DownloadStore(@NotNull File dir) {
+        this.dir = dir;
+        this.objectsDir = new File(dir + "/objects");
+        this.indexFile = new File(dir + "/index.json");
+        this.lockFile = new File(dir + "/index.lock");
+    }
+
+    /**
+     * Returns the store at the directory set in the config, or null if the store is disabled.
+     */
+    @Nullable
+    public static synchronized DownloadStore get() {
+        if (!isInstanceLoaded) {
+            isInstanceLoaded = true;
+            if (GD.CONFIG != null && GD.CONFIG.downloadStore.asString() != null
+                    && !GD.CONFIG.downloadStore.asString().trim().isEmpty())
+                instance = new DownloadStore(new File(GD.CONFIG.downloadStore.asString().trim()));
+        }
+        return instance;
+    }
+
+    @NotNull
+    public static String getKey(@NotNull String url, @NotNull String version) {
+        return url + "|" + version;
+    }
+
+    /**
+     * Returns the stored jar for this key, or null if there is none.
+     */
+    @Nullable
+    public synchronized File getFile(@NotNull String key) throws IOException {
+        String sha256 = getSha256(key);
+        if (sha256 == null) return null;
+        File file = getObjectFile(sha256);
+        return file.exists() ? file : null;
+    }
+
+    /**
+     * Returns the recorded SHA-256 hash for this key, or null if there is none.
+     */
+    @Nullable
+    public synchronized String getSha256(@NotNull String key) throws IOException {
+        return withLockedIndex(false, index -> index.get(key));
+    }
+
+    /**
+     * Installs the stored jar for this key at the target, if there is one. <br>
+     * The jar gets linked (or copied) next to the target first and is then renamed
+     * to the target atomically.
+     *
+     * @return true if the jar was installed from the store, false if it isn't stored.
+     */
+    public boolean install(@NotNull String key, @NotNull File target) throws IOException {
+        File stored = getFile(key);
+        if (stored == null) return false;
+
+        File part = new File(target.getPath() + ".part");
+        Files.deleteIfExists(part.toPath());
+        try {
+            Files.createLink(part.toPath(), stored.toPath());
+        } catch (Exception e) {
+            AL.debug(this.getClass(), "Failed to hard link " + stored + ", copying it instead: " + e.getMessage());
+            Files.copy(stored.toPath(), part.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        UtilsFiles.moveAtomically(part, target);
+        return true;
+    }
+
+    /**
+     * Adds the jar to the store, unless a jar with the same hash is already stored,
+     * and records its hash for this key.
+     *
+     * @param jar    the jar to add, which stays where it is.
+     * @param sha256 the jars SHA-256 hash as lowercase hex string.
+     */
+    public synchronized void add(@NotNull String key, @NotNull File jar, @NotNull String sha256) throws IOException {
+        File object = getObjectFile(sha256);
+        if (!object.exists()) {
+            object.getParentFile().mkdirs();
+            File tmp = new File(object.getPath() + "." + System.nanoTime() + ".tmp");
+            try {
+                Files.createLink(tmp.toPath(), jar.toPath());
+            } catch (Exception e) {
+                Files.copy(jar.toPath(), tmp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            UtilsFiles.moveAtomically(tmp, object);
+        }
+        withLockedIndex(true, index -> index.put(key, sha256));
+    }
+
+    @NotNull
+    private File getObjectFile(@NotNull String sha256) {
+        return new File(objectsDir + "/" + sha256.substring(0, 2) + "/" + sha256 + ".jar");
+    }
+
+    /**
+     * Runs the action with the current index, while holding a file lock,
+     * since other SPPU instances may use the same store at the same time.
+     *
+     * @param isModifying if true, the index gets written back after the action.
+     */
+    private <T> T withLockedIndex(boolean isModifying, @NotNull IndexAction<T> action) throws IOException {
+        dir.mkdirs();
+        try (FileChannel lockChannel = FileChannel.open(lockFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+             FileLock lock = lockChannel.lock(0, Long.MAX_VALUE, false)) {
+            Map<String, String> index = new HashMap<>();
+            if (indexFile.exists() && indexFile.length() != 0) {
+                try (Reader reader = new InputStreamReader(new FileInputStream(indexFile), StandardCharsets.UTF_8)) {
+                    Map<String, String> map = new Gson().fromJson(reader, INDEX_TYPE);
+                    if (map != null) index.putAll(map);
+                }
+            }
+            T result = action.run(index);
+            if (isModifying) {
+                File tmp = new File(indexFile.getPath() + ".tmp");
+                try (Writer writer = new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8)) {
+                    new Gson().toJson(index, INDEX_TYPE, writer);
+                }
+                UtilsFiles.moveAtomically(tmp, indexFile);
+            }
+            return result;
+        }
+    }
+
+    private interface IndexAction<T> {
+        T run(Map<String, String> index);
+    }
+}
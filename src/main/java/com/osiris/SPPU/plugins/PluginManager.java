@@ -13,150 +13,193 @@ import com.osiris.SPPU.utils.UtilsFiles;
 import com.osiris.autoplug.core.logger.AL;
 import com.osiris.dyml.YamlSection;
 import com.osiris.dyml.Yaml;
-import net.lingala.zip4j.ZipFile;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
+import java.util.zip.ZipFile;
 
 public class PluginManager {
+    private static PluginScanCache lastScanCache;
 
+    /**
+     * Scans the /plugins directory with the parallelism and scan cache settings from the config. <br>
+     * The scan cache stays in memory for the next call, thus it only gets read from its file once per process. <br>
+     * See {@link #getPlugins(int, PluginScanCache)} for details.
+     */
     @NotNull
-    public List<DetailedPlugin> getPlugins() {
-        List<DetailedPlugin> plugins = new ArrayList<>();
+    public List<DetailedPlugin> getPlugins() throws Exception {
+        int parallelism = 1;
+        boolean isHashing = false;
+        if (GD.CONFIG != null) {
+            if (GD.CONFIG.scanThreads.asString() != null) parallelism = GD.CONFIG.scanThreads.asInt();
+            if (GD.CONFIG.scanCacheHash.asString() != null) isHashing = GD.CONFIG.scanCacheHash.asBoolean();
+        }
+        if (parallelism <= 0) parallelism = Runtime.getRuntime().availableProcessors();
+
+        synchronized (PluginManager.class) {
+            PluginScanCache cache = lastScanCache;
+            if (cache != null && cache.isHashing() == isHashing)
+                cache.reuse(); // Still in memory from the last scan (daemon mode)
+            else {
+                cache = new PluginScanCache(new File(GD.SPPU_DIR + "/plugins-scan-cache.json"), isHashing);
+                try {
+                    cache.load();
+                } catch (Exception e) {
+                    AL.warn("Failed to load the plugins scan cache. All plugin jars will be read again.", e);
+                }
+            }
+            List<DetailedPlugin> plugins = getPlugins(parallelism, cache);
+            try {
+                cache.save();
+            } catch (Exception e) {
+                AL.warn("Failed to save the plugins scan cache.", e);
+            }
+            lastScanCache = cache;
+            return plugins;
+        }
+    }
+
+    /**
+     * Same as {@link #getPlugins(int, PluginScanCache)}, but without cache.
+     */
+    @NotNull
+    public List<DetailedPlugin> getPlugins(int parallelism) throws Exception {
+        return getPlugins(parallelism, null);
+    }
 
+    /**
+     * Extracts the details of each plugin jar in the /plugins directory. <br>
+     * If the parallelism is bigger than 1 the jars get spread across a fork-join pool of that size.
+     * The order of the returned list is the same as the order of the jars, regardless of the parallelism.
+     *
+     * @param parallelism the maximum amount of jars that get inspected at the same time.
+     * @param cache       if not null, unchanged jars are taken from this cache instead of being read,
+     *                    and the details of all other jars get added to it.
+     */
+    @NotNull
+    public List<DetailedPlugin> getPlugins(int parallelism, @Nullable PluginScanCache cache) throws Exception {
         UtilsFiles fm = new UtilsFiles();
 
         // Get a list of all jar files in the /plugins dir
         List<File> plJarFiles = fm.getAllPlugins();
 
-        // Location where each plugin.yml file will be extracted to
-        File ymlFile = new File(GD.SPPU_DIR + "/plugin-temp.yml");
-        byte[] buffer = new byte[1024];
-
         /*
         1. Extract information from each jars "plugin.yml" file
         2. Convert into a Plugin.class
         3. Add the Plugin.class to the plugins list
          */
-        if (!plJarFiles.isEmpty())
+        if (parallelism <= 1 || plJarFiles.size() <= 1) {
+            List<DetailedPlugin> plugins = new ArrayList<>();
             for (File jar :
                     plJarFiles) {
-                FileInputStream fis = null;
-                ZipInputStream zis = null;
-                ZipEntry ze = null;
-                try {
-                    // Clean up old
-                    if (ymlFile.exists()) {
-                        ymlFile.delete();
-                        ymlFile.createNewFile();
-                    }
-
-                    fis = new FileInputStream(jar);
-                    zis = new ZipInputStream(fis);
-                    ze = zis.getNextEntry();
-                    while (ze != null) {
-                        if (ze.getName().equals("plugin.yml")) {
-                            // Extract this plugin.yml file
-                            FileOutputStream fos = new FileOutputStream(ymlFile);
-                            int len;
-                            while ((len = zis.read(buffer)) > 0) {
-                                fos.write(buffer, 0, len);
-                            }
-                            fos.close();
-                            zis.closeEntry();
-
-                            // Load the plugin.yml and get its details
-                            final Yaml ymlConfig = new Yaml(ymlFile);
-                            ymlConfig.load();
-
-                            String name = ymlConfig.put("name").asString();
-                            //if (name==null || name.isEmpty()){ // In this case use the jars name as name
-                            //    name = jar.getName();
-                            //} // Don't do this, because the jars name contains its version and generally it wouldn't be nice
-                            YamlSection version = ymlConfig.put("version");
-                            YamlSection authorRaw = ymlConfig.put("author");
-                            YamlSection authorsRaw = ymlConfig.put("authors");
-
-                            String author = null;
-                            if (!authorRaw.getValues().isEmpty())
-                                author = authorRaw.asString();
-                            else
-                                author = authorsRaw.asString(); // Returns only the first author
-
-                            // Why this is done? Because each plugin.yml file stores its authors list differently (Array or List, or numbers idk, or some other stuff...)
-                            // and all we want is just a simple list. This causes errors.
-                            // We get the list as a String, remove all "[]" brackets and " "(spaces) so we get a list of names only separated by commas
-                            // That is then sliced into a list.
-                            // Before: [name1, name2]
-                            // After: name1,name2
-                            if (author != null) author = Arrays.asList(
-                                            author.replaceAll("[\\[\\]]", "")
-                                                    .split(","))
-                                    .get(0);
-
-                            // Also check for ids in the plugin.yml
-                            int spigotId = 0;
-                            int bukkitId = 0;
-                            YamlSection mSpigotId = ymlConfig.get("spigot-id");
-                            YamlSection mBukkitId = ymlConfig.get("bukkit-id");
-                            if (mSpigotId != null && mSpigotId.asString() != null) spigotId = mSpigotId.asInt();
-                            if (mBukkitId != null && mBukkitId.asString() != null) bukkitId = mBukkitId.asInt();
-
-                            plugins.add(new DetailedPlugin(jar.getPath(), name, version.asString(), author, spigotId, bukkitId, null));
-                        }
-                        // Get next file in zip
-                        zis.closeEntry();
-                        ze = zis.getNextEntry();
-                    } // Loop end
-                    // Close last ZipEntry
-                    zis.closeEntry();
-                    zis.close();
-                    fis.close();
+                DetailedPlugin plugin = getPluginOrWarn(jar, cache);
+                if (plugin != null) plugins.add(plugin);
+            }
+            return plugins;
+        }
 
-                } catch (Exception e) {
-                    AL.warn("Failed to get plugin information for: " + jar.getName(), e);
-                } finally {
-                    try {
-                        if (zis != null && ze != null)
-                            zis.closeEntry();
-                    } catch (Exception e) {
-                        e.printStackTrace();
-                    }
-                    try {
-                        if (zis != null)
-                            zis.close();
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                    }
-                    try {
-                        if (fis != null) fis.close();
-                    } catch (Exception e) {
-                        e.printStackTrace();
-                    }
-                    try{
-                        ymlFile.delete();
-                    } catch (Exception e) {
-                        e.printStackTrace();
-                    }
-                }
+        ForkJoinPool pool = new ForkJoinPool(Math.min(parallelism, plJarFiles.size()));
+        try {
+            // Parallel streams use the pool they get submitted to.
+            // Each jar gets its own ZipFile and buffers, thus nothing is shared between the tasks.
+            return pool.submit(() -> plJarFiles.parallelStream()
+                    .map(jar -> getPluginOrWarn(jar, cache))
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toList())).get();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Nullable
+    private DetailedPlugin getPluginOrWarn(@NotNull File jar, @Nullable PluginScanCache cache) {
+        try {
+            if (cache == null) return getPlugin(jar);
+
+            String sha256 = cache.getSha256(jar); // Only hashed once, even if the jar changed
+            PluginScanCache.Entry entry = cache.get(jar, sha256);
+            if (entry != null) return entry.toPlugin(jar);
+            DetailedPlugin plugin = getPlugin(jar);
+            cache.put(jar, plugin, sha256);
+            return plugin;
+        } catch (Exception e) {
+            AL.warn("Failed to get plugin information for: " + jar.getName(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Reads the details of the provided plugin jar from its 'plugin.yml' file. <br>
+     * The jar gets opened with random access, which means that only its central directory
+     * and the 'plugin.yml' entry get read, no matter how big the jar is. The 'plugin.yml'
+     * gets parsed directly from memory, without extracting it to disk first.
+     *
+     * @return the plugins details, or null if the jar doesn't contain a 'plugin.yml' file.
+     */
+    @Nullable
+    public DetailedPlugin getPlugin(@NotNull File jar) throws Exception {
+        try (ZipFile zip = new ZipFile(jar)) {
+            ZipEntry ze = zip.getEntry("plugin.yml");
+            if (ze == null) return null;
+
+            // Load the plugin.yml and get its details
+            final Yaml ymlConfig;
+            try (InputStream in = zip.getInputStream(ze)) {
+                ymlConfig = new Yaml(in, null); // Never saved, thus no output stream
+                ymlConfig.load();
             }
 
-        return plugins;
+            String name = ymlConfig.put("name").asString();
+            //if (name==null || name.isEmpty()){ // In this case use the jars name as name
+            //    name = jar.getName();
+            //} // Don't do this, because the jars name contains its version and generally it wouldn't be nice
+            YamlSection version = ymlConfig.put("version");
+            YamlSection authorRaw = ymlConfig.put("author");
+            YamlSection authorsRaw = ymlConfig.put("authors");
+
+            String author = null;
+            if (!authorRaw.getValues().isEmpty())
+                author = authorRaw.asString();
+            else
+                author = authorsRaw.asString(); // Returns only the first author
+
+            // Why this is done? Because each plugin.yml file stores its authors list differently (Array or List, or numbers idk, or some other stuff...)
+            // and all we want is just a simple list. This causes errors.
+            // We get the list as a String, remove all "[]" brackets and " "(spaces) so we get a list of names only separated by commas
+            // That is then sliced into a list.
+            // Before: [name1, name2]
+            // After: name1,name2
+            if (author != null) author = Arrays.asList(
+                            author.replaceAll("[\\[\\]]", "")
+                                    .split(","))
+                    .get(0);
+
+            // Also check for ids in the plugin.yml
+            int spigotId = 0;
+            int bukkitId = 0;
+            YamlSection mSpigotId = ymlConfig.get("spigot-id");
+            YamlSection mBukkitId = ymlConfig.get("bukkit-id");
+            if (mSpigotId != null && mSpigotId.asString() != null) spigotId = mSpigotId.asInt();
+            if (mBukkitId != null && mBukkitId.asString() != null) bukkitId = mBukkitId.asInt();
+
+            return new DetailedPlugin(jar.getPath(), name, version.asString(), author, spigotId, bukkitId, null);
+        }
     }
 
     @NotNull
     @Deprecated
     private File extractPluginYmlFile(@NotNull File jar) throws Exception {
         // A jar file is actually a zip file, thats why we can use this method
-        ZipFile zip = new ZipFile(jar);
+        net.lingala.zip4j.ZipFile zip = new net.lingala.zip4j.ZipFile(jar);
 
         // The plugin yml file we will extract from the jar
         String path = System.getProperty("user.dir") + "/autoplug/system";
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2021 Osiris-Team.
+ * All rights reserved.
+ *
+ * This software is copyrighted work, licensed under the terms
+ * of the MIT-License. Consult the "LICENSE" file for details.
+ */
+
+package com.osiris.SPPU.plugins;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import com.osiris.SPPU.utils.UtilsFiles;
+import com.osiris.SPPU.utils.UtilsHash;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers the details extracted from each plugin jar, so that
+ * unchanged jars don't have to be opened again on the next scan. <br>
+ * A jar counts as unchanged if its path, size and last modified time are the same
+ * (and its SHA-256 hash, if hashing is enabled).
+ */
+public class PluginScanCache {
+    private static final Type ENTRIES_TYPE = new TypeToken<Map<String, Entry>>() {
+    }.getType();
+    private final File file;
+    private final boolean isHashing;
+    private final Map<String, Entry> oldEntries = new ConcurrentHashMap<>();
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * @param file      the json file, in which the cache gets stored.
+     * @param isHashing if true, the jars contents are hashed and compared too, which
+     *                  means that each jar gets read completely on every scan.
+     */
+    public PluginScanCache(@NotNull File file, boolean isHashing) {
+        this.file = file;
+        this.isHashing = isHashing;
+    }
+
+    /**
+     * Loads the entries of the last scan from the file. Does nothing if the file doesn't exist.
+     */
+    public void load() throws IOException {
+        oldEntries.clear();
+        if (!file.exists() || file.length() == 0) return;
+        try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+            Map<String, Entry> map = new Gson().fromJson(reader, ENTRIES_TYPE);
+            if (map != null) oldEntries.putAll(map);
+        }
+    }
+
+    /**
+     * Makes the entries of the last scan the ones to compare against, without reading the file again. <br>
+     * Used to keep the cache in memory between scans of a long running process.
+     */
+    public void reuse() {
+        oldEntries.clear();
+        oldEntries.putAll(entries);
+        entries.clear();
+    }
+
+    /**
+     * Writes the entries of the current scan to the file. <br>
+     * Entries of jars that weren't part of the current scan get removed.
+     */
+    public void save() throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8)) {
+            new Gson().toJson(entries, ENTRIES_TYPE, writer);
+        }
+        UtilsFiles.moveAtomically(tmp, file);
+    }
+
+    public boolean isHashing() {
+        return isHashing;
+    }
+
+    /**
+     * Returns the jars SHA-256 hash if hashing is enabled, otherwise null. <br>
+     * Gets computed once per jar and passed to {@link #get(File, String)} and {@link #put(File, DetailedPlugin, String)}.
+     */
+    @Nullable
+    public String getSha256(@NotNull File jar) throws IOException {
+        return isHashing ? UtilsHash.sha256(jar) : null;
+    }
+
+    /**
+     * Returns the cached entry for this jar, or null if there is none, or the jar changed.
+     *
+     * @param sha256 the jars hash from {@link #getSha256(File)}.
+     */
+    @Nullable
+    public Entry get(@NotNull File jar, @Nullable String sha256) throws IOException {
+        Entry entry = oldEntries.get(jar.getPath());
+        if (entry == null) return null;
+        BasicFileAttributes attrs = Files.readAttributes(jar.toPath(), BasicFileAttributes.class);
+        if (entry.size != attrs.size() || entry.lastModified != attrs.lastModifiedTime().toMillis())
+            return null;
+        if (isHashing && (entry.sha256 == null || !entry.sha256.equals(sha256)))
+            return null;
+        entries.put(jar.getPath(), entry);
+        return entry;
+    }
+
+    /**
+     * Adds the details of this jar to the cache.
+     *
+     * @param plugin the extracted details, or null if the jar has no 'plugin.yml' file.
+     * @param sha256 the jars hash from {@link #getSha256(File)}.
+     */
+    public void put(@NotNull File jar, @Nullable DetailedPlugin plugin, @Nullable String sha256) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(jar.toPath(), BasicFileAttributes.class);
+        Entry entry = new Entry();
+        entry.size = attrs.size();
+        entry.lastModified = attrs.lastModifiedTime().toMillis();
+        if (isHashing) entry.sha256 = sha256;
+        if (plugin != null) {
+            entry.hasPluginYml = true;
+            entry.name = plugin.getName();
+            entry.version = plugin.getVersion();
+            entry.author = plugin.getAuthor();
+            entry.spigotId = plugin.getSpigotId();
+            entry.bukkitId = plugin.getBukkitId();
+        }
+        entries.put(jar.getPath(), entry);
+    }
+
+    public static class Entry {
+        long size;
+        long lastModified;
+        String sha256;
+        boolean hasPluginYml;
+        String name;
+        String version;
+        String author;
+        int spigotId;
+        int bukkitId;
+
+        /**
+         * Returns a new {@link DetailedPlugin} with the cached details,
+         * or null if the jar has no 'plugin.yml' file.
+         */
+        @Nullable
+        public DetailedPlugin toPlugin(@NotNull File jar) {
+            if (!hasPluginYml) return null;
+            return new DetailedPlugin(jar.getPath(), name, version, author, spigotId, bukkitId, null);
+        }
+    }
+}
@@ -10,6 +10,7 @@ package com.osiris.SPPU.plugins;
 
 import com.google.gson.*;
 import com.osiris.SPPU.utils.GD;
+import com.osiris.SPPU.utils.UtilsHash;
 import com.osiris.autoplug.core.logger.AL;
 import com.osiris.headlessbrowser.exceptions.NodeJsCodeException;
 import com.osiris.headlessbrowser.windows.PlaywrightWindow;
@@ -23,18 +24,44 @@ import java.net.HttpCookie;
 import java.util.Random;
 
 public class SpigotAuthenticator {
+    private static final long MIN_POLL_DELAY_MS = 100;
+    private static final long MAX_POLL_DELAY_MS = 2000;
+    private static final long CLOUDFLARE_TIMEOUT_MS = 65000;
+    private static final long LOGIN_TIMEOUT_MS = 20000;
+
+    /**
+     * Returns a salted fingerprint of the credentials, in the format 'salt:fingerprint'. <br>
+     * Stored instead of the credentials themselves, to detect if they changed since the last login.
+     */
+    public static String getCredentialsFingerprint(String spigotUsername, String spigotPassword) {
+        String salt = UtilsHash.newSalt();
+        return salt + ":" + UtilsHash.fingerprint(spigotUsername + "\n" + spigotPassword, salt);
+    }
+
+    /**
+     * Returns true if the credentials match the provided fingerprint (see {@link #getCredentialsFingerprint(String, String)}).
+     */
+    public static boolean isSameCredentials(String credentialsFingerprint, String spigotUsername, String spigotPassword) {
+        if (credentialsFingerprint == null || spigotUsername == null || spigotPassword == null) return false;
+        int separator = credentialsFingerprint.indexOf(':');
+        if (separator < 0) return false;
+        String salt = credentialsFingerprint.substring(0, separator);
+        return credentialsFingerprint.substring(separator + 1).equals(UtilsHash.fingerprint(spigotUsername + "\n" + spigotPassword, salt));
+    }
 
     /**
      * Throws an exceptions, with the details, if the login attempt fails.
+     *
+     * @param isCredentialsChanged true if the credentials changed since the last login,
+     *                             thus the saved cookies can't be used.
      */
     public void attemptLoginForWindow(PlaywrightWindow window, String spigotUsername, String spigotPassword,
-                                      String spigotUsernameOld, String spigotPasswordOld) throws Exception {
+                                      boolean isCredentialsChanged) throws Exception {
         boolean isLoggedIn = false;
         File spigotCookiesJson = new File(GD.SPPU_DIR + "/spigot-cookies.json");
         if (!spigotCookiesJson.exists()) spigotCookiesJson.createNewFile();
 
-        if ((spigotUsernameOld == null || spigotPasswordOld == null) ||
-                (!spigotUsername.equals(spigotUsernameOld) || !spigotPassword.equals(spigotPasswordOld))) {
+        if (isCredentialsChanged) {
             AL.debug(this.getClass(), "Logging in with credentials...");
             window.load("https://www.spigotmc.org/login");
             waitForCloudflare(window);
@@ -86,24 +113,61 @@ public class SpigotAuthenticator {
         throw new Exception("Failed to login with provided credentials! Please check and update them.");
     }
 
-    public void waitForCloudflare(PlaywrightWindow window) throws Exception {
-        Thread.sleep(5000);
-        boolean cloudflarePassed = false;
-        for (int i = 0; i < 60; i++) {
-            Thread.sleep(1000);
-            if (isCloudflarePassed(window)) {
-                cloudflarePassed = true;
-                break;
+    /**
+     * Logs the target window in with the session of the already logged in source window,
+     * by copying its login ('xf_user', 'xf_session') and cloudflare clearance ('cf_clearance') cookies. <br>
+     * No credentials get sent, thus this doesn't count as another login.
+     *
+     * @throws Exception if the source window isn't logged in, or the target window isn't logged in with the copied cookies.
+     */
+    public void copySession(PlaywrightWindow source, PlaywrightWindow target) throws Exception {
+        boolean setSpigotXfUserCookie = false;
+        boolean setSpigotXfSessionCookie = false;
+        for (JsonElement element :
+                source.getCookiesAsJsonArray()) {
+            JsonObject jsonCookie = element.getAsJsonObject();
+            String name = jsonCookie.get("name").getAsString();
+            if (name.equals("xf_user") || name.equals("xf_session") || name.equals("cf_clearance")) {
+                target.setCookie(parseJsonCookieToHttpCookie(jsonCookie));
+                if (name.equals("xf_user")) setSpigotXfUserCookie = true;
+                else if (name.equals("xf_session")) setSpigotXfSessionCookie = true;
             }
         }
-        if (!cloudflarePassed) throw new Exception("Failed to pass the cloudflare check!");
-        Thread.sleep(new Random().nextInt(2000 - 500) + 500);
-        AL.debug(this.getClass(), "Cloudflare passed!");
+        if (!setSpigotXfUserCookie) throw new Exception("Failed to copy 'xf_user' cookie!");
+        if (!setSpigotXfSessionCookie) throw new Exception("Failed to copy 'xf_session' cookie!");
+
+        target.load("https://www.spigotmc.org/");
+        waitForCloudflare(target);
+        if (!isLoginSuccess(target))
+            throw new Exception("Failed to login with the cookies of the first window!");
+        AL.debug(this.getClass(), "Copied the Spigot session into another window.");
+    }
+
+    /**
+     * Waits until the current page is not a cloudflare challenge anymore. <br>
+     * The page gets checked right away and then with exponentially growing delays (up to {@link #MAX_POLL_DELAY_MS}),
+     * thus pages without challenge pass instantly, while pages with challenge are waited for as long as needed.
+     */
+    public void waitForCloudflare(PlaywrightWindow window) throws Exception {
+        long deadline = System.currentTimeMillis() + CLOUDFLARE_TIMEOUT_MS;
+        long delay = MIN_POLL_DELAY_MS;
+        boolean wasChallenged = false;
+        while (!isCloudflarePassed(window)) {
+            wasChallenged = true;
+            if (System.currentTimeMillis() >= deadline)
+                throw new Exception("Failed to pass the cloudflare check!");
+            Thread.sleep(delay);
+            delay = Math.min(delay * 2, MAX_POLL_DELAY_MS);
+        }
+        if (wasChallenged) // Act less bot-like after an actual challenge
+            Thread.sleep(new Random().nextInt(2000 - 500) + 500);
+        AL.debug(this.getClass(), "Cloudflare passed!" + (wasChallenged ? "" : " (no challenge)"));
     }
 
     private void updateCookiesFile(PlaywrightWindow window, File spigotCookiesJson) throws Exception {
         JsonObject xfUserJsonCookie = null;
         JsonObject xfSessionJsonCookie = null;
+        JsonObject cfClearanceJsonCookie = null;
         for (JsonElement element :
                 window.getCookiesAsJsonArray()) {
             JsonObject jsonCookie = element.getAsJsonObject();
@@ -112,6 +176,8 @@ public class SpigotAuthenticator {
                 xfUserJsonCookie = jsonCookie;
             } else if (name.equals("xf_session")) {
                 xfSessionJsonCookie = jsonCookie;
+            } else if (name.equals("cf_clearance")) {
+                cfClearanceJsonCookie = jsonCookie; // Lets plain HTTP requests pass cloudflare, see SpigotHttpSession
             }
         }
 
@@ -122,25 +188,58 @@ public class SpigotAuthenticator {
             JsonArray array = new JsonArray();
             array.add(xfUserJsonCookie);
             array.add(xfSessionJsonCookie);
+            if (cfClearanceJsonCookie != null) array.add(cfClearanceJsonCookie);
             bw.write(new GsonBuilder().setPrettyPrinting().create().toJson(array));
         }
+        updateUserAgentFile(window, new File(spigotCookiesJson.getParentFile(), "spigot-user-agent.txt"));
         AL.debug(this.getClass(), "Updated Spigot-Login-Cookies successfully!");
     }
 
+    /**
+     * Cloudflare binds the 'cf_clearance' cookie to the user agent of the browser that passed the check,
+     * thus plain HTTP requests with that cookie must send the same user agent, see {@link SpigotHttpSession}.
+     */
+    private void updateUserAgentFile(PlaywrightWindow window, File spigotUserAgentTxt) {
+        try {
+            String userAgent = window.executeJSAndGetResult("return navigator.userAgent;");
+            if (userAgent == null || userAgent.trim().isEmpty()) throw new Exception("Browser returned an empty user agent.");
+            try (BufferedWriter bw = new BufferedWriter(new FileWriter(spigotUserAgentTxt))) {
+                bw.write(userAgent.trim());
+            }
+        } catch (Exception e) {
+            AL.warn("Failed to save the browsers user agent. Premium plugins will probably be updated with the browser.", e);
+            spigotUserAgentTxt.delete(); // Don't keep the user agent of an older browser
+        }
+    }
+
     private boolean doLoginWithCredentials(PlaywrightWindow window, String spigotUsername, String spigotPassword) throws InterruptedException, NodeJsCodeException {
         window.fill("input[id=ctrl_pageLogin_login][class=textCtrl]", spigotUsername);
         window.fill("input[id=ctrl_pageLogin_password][class=textCtrl]", spigotPassword);
         int max = 150;
         int min = 50;
         window.pressKey("Enter", new Random().nextInt(max + 1 - min) + min);
-        Thread.sleep(10000); // Sometimes there is a cloudflare check again, that's why we wait 10 seconds just to be sure
+
+        // Wait until the login either succeeded or failed. Sometimes there is a cloudflare check again, which is waited for too.
+        long deadline = System.currentTimeMillis() + LOGIN_TIMEOUT_MS;
+        long delay = MIN_POLL_DELAY_MS;
+        while (System.currentTimeMillis() < deadline) {
+            Thread.sleep(delay);
+            delay = Math.min(delay * 2, MAX_POLL_DELAY_MS);
+            Document doc = window.getBodyInnerHtml();
+            if (!doc.getElementsByClass("accountUsername").isEmpty()) return true;
+            if (!doc.getElementsByClass("errorPanel").isEmpty()) return false; // Wrong credentials
+        }
         return isLoginSuccess(window);
     }
 
     private boolean isCloudflarePassed(PlaywrightWindow window) {
         Document doc = window.getBodyInnerHtml();
+        if (doc == null || doc.body() == null || doc.body().children().isEmpty())
+            return false; // Page not loaded yet
         return doc.getElementsByClass("cf-browser-verification").isEmpty()
-                && doc.getElementsByClass("cf-im-under-attack").isEmpty();
+                && doc.getElementsByClass("cf-im-under-attack").isEmpty()
+                && doc.getElementById("challenge-form") == null
+                && doc.getElementById("challenge-stage") == null;
     }
 
     public boolean isLoginSuccess(PlaywrightWindow window) {
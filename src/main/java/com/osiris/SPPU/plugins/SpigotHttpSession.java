@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2021 Osiris-Team.
+ * All rights reserved.
+ *
+ * This software is copyrighted work, licensed under the terms
+ * of the MIT-License. Consult the "LICENSE" file for details.
+ */
+
+package com.osiris.SPPU.plugins;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.osiris.SPPU.utils.HttpStatusException;
+import com.osiris.SPPU.utils.UtilsHttp;
+import com.osiris.autoplug.core.logger.AL;
+import okhttp3.CacheControl;
+import okhttp3.Cookie;
+import okhttp3.CookieJar;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Accesses spigotmc.org with plain HTTP requests, authenticated by the cookies
+ * the {@link SpigotAuthenticator} saved after the last browser login. <br>
+ * Requests send the user agent of that browser too, since cloudflare only accepts its clearance cookie together with it. <br>
+ * This is way faster than a browser, but only works as long as the session is valid
+ * and cloudflare doesn't challenge the requests. In both cases the methods return null,
+ * so that the caller can fall back to the browser.
+ */
+public class SpigotHttpSession {
+    private final OkHttpClient client;
+    private final String userAgent;
+
+    private SpigotHttpSession(List<Cookie> cookies, String userAgent) {
+        this.userAgent = userAgent;
+        // Shares the connection pool and interceptors of the main client, but sends the session cookies
+        this.client = UtilsHttp.getClient().newBuilder().cookieJar(new SessionCookieJar(cookies)).build();
+    }
+
+    /**
+     * Returns a session with the cookies from the provided file, or null if the file
+     * doesn't contain the 'xf_user' and 'xf_session' login cookies,
+     * or the browsers user agent (spigot-user-agent.txt next to the cookies file) is missing.
+     */
+    @Nullable
+    public static SpigotHttpSession load(@NotNull File spigotCookiesJson) throws Exception {
+        if (!spigotCookiesJson.exists() || spigotCookiesJson.length() == 0) return null;
+        List<Cookie> cookies = new ArrayList<>();
+        boolean hasXfUser = false;
+        boolean hasXfSession = false;
+        try (Reader reader = new FileReader(spigotCookiesJson)) {
+            for (JsonElement element :
+                    new Gson().fromJson(reader, JsonArray.class)) {
+                Cookie cookie = parseJsonCookie(element.getAsJsonObject());
+                if (cookie.name().equals("xf_user")) hasXfUser = true;
+                else if (cookie.name().equals("xf_session")) hasXfSession = true;
+                cookies.add(cookie);
+            }
+        }
+        if (!hasXfUser || !hasXfSession) return null;
+
+        File spigotUserAgentTxt = new File(spigotCookiesJson.getParentFile(), "spigot-user-agent.txt");
+        if (!spigotUserAgentTxt.exists()) return null; // Any other user agent gets challenged by cloudflare
+        String userAgent = new String(Files.readAllBytes(spigotUserAgentTxt.toPath()), StandardCharsets.UTF_8).trim();
+        if (userAgent.isEmpty()) return null;
+        return new SpigotHttpSession(cookies, userAgent);
+    }
+
+    private static Cookie parseJsonCookie(JsonObject jsonCookie) {
+        String domain = jsonCookie.get("domain").getAsString();
+        if (domain.startsWith(".")) domain = domain.substring(1); // OkHttp matches sub-domains without the leading dot
+        Cookie.Builder builder = new Cookie.Builder()
+                .name(jsonCookie.get("name").getAsString())
+                .value(jsonCookie.get("value").getAsString())
+                .domain(domain)
+                .path(jsonCookie.get("path").getAsString());
+        if (jsonCookie.get("secure").getAsBoolean()) builder.secure();
+        if (jsonCookie.get("http_only").getAsBoolean()) builder.httpOnly();
+        return builder.build();
+    }
+
+    /**
+     * Returns the client that sends the session cookies. Requests should use {@link #getUserAgent()}.
+     */
+    @NotNull
+    public OkHttpClient getClient() {
+        return client;
+    }
+
+    /**
+     * Returns the user agent of the browser that logged in and passed cloudflare.
+     */
+    @NotNull
+    public String getUserAgent() {
+        return userAgent;
+    }
+
+    /**
+     * Loads the resources page and returns the link of its download button. <br>
+     * Returns null if the page couldn't be accessed with this session
+     * (cloudflare challenge, expired session or an unexpected page).
+     *
+     * @throws Exception if the logged in user does not own the premium plugin.
+     */
+    @Nullable
+    public String getDownloadUrl(@NotNull String spigotId) throws Exception {
+        String url = "https://www.spigotmc.org/resources/" + spigotId;
+        Request request = new Request.Builder().url(url)
+                .header("User-Agent", userAgent)
+                .cacheControl(new CacheControl.Builder().noStore().build()) // Pages of logged in users don't belong into the http cache
+                .build();
+        try (Response response = client.newCall(request).execute()) {
+            ResponseBody body = response.body();
+            String html = body != null ? body.string() : "";
+            if (isCloudflareChallenge(response, html)) {
+                AL.debug(this.getClass(), "Cloudflare challenged the request to " + url + " (" + response.code() + ").");
+                return null;
+            }
+            if (!response.isSuccessful())
+                throw new HttpStatusException(response.code(), "Failed to load the page of premium plugin " + spigotId + ": " + response.message(), url);
+
+            Document doc = Jsoup.parse(html, "https://www.spigotmc.org/");
+            if (doc.getElementsByClass("accountUsername").isEmpty()) {
+                AL.debug(this.getClass(), "Session cookies are not logged in anymore.");
+                return null;
+            }
+            Element downloadButton = doc.getElementsByClass("downloadButton").first();
+            if (downloadButton == null || downloadButton.getElementsByTag("a").isEmpty()) {
+                AL.debug(this.getClass(), "Failed to find the download button on " + url + ".");
+                return null;
+            }
+            String downloadUrl = "https://www.spigotmc.org/" + downloadButton.getElementsByTag("a").get(0).attr("href"); // The download or purchase buttons <a> tag with the download link
+            if (downloadUrl.contains("/purchase"))
+                throw new Exception("Premium update failed, because you do not own this premium plugin.");
+            return downloadUrl;
+        }
+    }
+
+    private boolean isCloudflareChallenge(Response response, String html) {
+        if (response.header("cf-mitigated") != null) return true;
+        if ((response.code() == 403 || response.code() == 503)
+                && "cloudflare".equalsIgnoreCase(response.header("Server"))) return true;
+        return html.contains("cf-browser-verification")
+                || html.contains("cf-im-under-attack")
+                || html.contains("id=\"challenge-form\"")
+                || html.contains("id=\"challenge-stage\"");
+    }
+
+    /**
+     * Holds the cookies in memory only, since they get refreshed by the next browser login anyway.
+     */
+    private static class SessionCookieJar implements CookieJar {
+        private final List<Cookie> cookies;
+
+        private SessionCookieJar(List<Cookie> cookies) {
+            this.cookies = new ArrayList<>(cookies);
+        }
+
+        @NotNull
+        @Override
+        public synchronized List<Cookie> loadForRequest(@NotNull HttpUrl url) {
+            List<Cookie> matching = new ArrayList<>();
+            long now = System.currentTimeMillis();
+            for (Cookie cookie :
+                    cookies) {
+                if (cookie.expiresAt() > now && cookie.matches(url)) matching.add(cookie);
+            }
+            return matching;
+        }
+
+        @Override
+        public synchronized void saveFromResponse(@NotNull HttpUrl url, @NotNull List<Cookie> newCookies) {
+            for (Cookie newCookie :
+                    newCookies) {
+                cookies.removeIf(cookie -> cookie.name().equals(newCookie.name())
+                        && cookie.domain().equals(newCookie.domain())
+                        && cookie.path().equals(newCookie.path()));
+                cookies.add(newCookie);
+            }
+        }
+    }
+}
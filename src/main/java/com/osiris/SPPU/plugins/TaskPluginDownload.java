@@ -8,26 +8,38 @@
 
 package com.osiris.SPPU.plugins;
 
+import com.osiris.SPPU.utils.DigestingChannel;
 import com.osiris.SPPU.utils.GD;
+import com.osiris.SPPU.utils.HttpStatusException;
+import com.osiris.SPPU.utils.StateStore;
+import com.osiris.SPPU.utils.UtilsFiles;
+import com.osiris.SPPU.utils.UtilsHash;
+import com.osiris.SPPU.utils.UtilsHttp;
 import com.osiris.autoplug.core.logger.AL;
-import com.osiris.betterthread.BThreadManager;
 import com.osiris.betterthread.BThread;
 import com.osiris.betterthread.BThreadManager;
+import com.osiris.betterthread.BWarning;
+import okhttp3.CacheControl;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
 import okhttp3.ResponseBody;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
 import java.io.File;
-import java.io.FileOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
-import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
 import java.util.Random;
 
 
 public class TaskPluginDownload extends BThread {
+    private static final long TRANSFER_CHUNK_SIZE = 256 * 1024;
+    private static final long STATUS_UPDATE_INTERVAL_MS = 250;
     private final String plName;
     private final String plLatestVersion;
     private final String url;
@@ -37,8 +49,14 @@ public class TaskPluginDownload extends BThread {
     private final File deleteDest;
     private final boolean isPremium;
     private File dest;
+    private String sha256;
+    private long expectedFileSize = -1;
+    private OkHttpClient client;
+    private String userAgent;
     private boolean isDownloadSuccessful;
     private boolean isInstallSuccessful;
+    private boolean isReportingFailure = true;
+    private Exception failure;
 
     public TaskPluginDownload(String name, BThreadManager manager,
                               String plName, String plLatestVersion,
@@ -97,43 +115,142 @@ public class TaskPluginDownload extends BThread {
             setStatus("Your profile doesn't allow downloads! Profile: " + profile);
             finish(false);
             return;
-        } else if (profile.equals("MANUAL")) {
-            download();
-            isDownloadSuccessful = true;
-        } else {
-            download();
-            isDownloadSuccessful = true;
-            if (finalDest.exists()) finalDest.delete();
-            finalDest.createNewFile();
-            if (deleteDest != null && deleteDest.exists()) deleteDest.delete();
-            Files.copy(dest.toPath(), finalDest.toPath(), StandardCopyOption.REPLACE_EXISTING);
-            isInstallSuccessful = true;
-            setStatus("Installed update for " + plName + " successfully!");
+        }
+        try {
+            if (profile.equals("MANUAL")) {
+                download();
+                isDownloadSuccessful = true;
+            } else {
+                // Download directly next to the final destination, so that the
+                // installation is a single atomic rename of the completed download.
+                download(finalDest);
+                isDownloadSuccessful = true;
+                if (deleteDest != null && deleteDest.exists()
+                        && !deleteDest.getCanonicalFile().equals(finalDest.getCanonicalFile()))
+                    deleteDest.delete();
+                isInstallSuccessful = true;
+                setStatus("Installed update for " + plName + " successfully!");
+            }
+        } catch (Exception e) {
+            if (isReportingFailure) throw e;
+            failure = e;
+            setStatus("Download of " + plName + " failed: " + e.getMessage());
+            finish(false);
         }
     }
 
+    /**
+     * Downloads the jar into a '.part' file first, which gets renamed to the actual file name once complete. <br>
+     * If the connection breaks, the download gets retried with increasing delays between the attempts.
+     * Each retry (and each run of SPPU) resumes the '.part' file at its current length with a 'Range' request,
+     * as long as the server still has the same file, which gets verified with the 'If-Range' header.
+     */
     public void download() throws Exception {
         GD.WORKING_DIR = new File(System.getProperty("user.dir"));
         File dir = new File(GD.WORKING_DIR + "/autoplug/downloads");
         if (!dir.exists()) dir.mkdirs();
 
-        dest = new File(dir + "/" + plName + "-[" + plLatestVersion + "].jar");
-        if (dest.exists()) dest.delete();
-        dest.createNewFile();
+        download(new File(dir + "/" + plName + "-[" + plLatestVersion + "].jar"));
+    }
+
+    /**
+     * Same as {@link #download()}, but downloads to the provided file. <br>
+     * The completed '.part' file gets flushed to disk and atomically renamed to the provided file,
+     * thus it never exists half-written.
+     */
+    public void download(File dest) throws Exception {
+        this.dest = dest;
+        File part = new File(dest.getPath() + ".part");
+        File partValidator = new File(dest.getPath() + ".part.validator");
 
         final String fileName = dest.getName();
+        DownloadStore store = DownloadStore.get();
+        String storeKey = DownloadStore.getKey(url, plLatestVersion);
+        if (store != null) {
+            try {
+                if (store.install(storeKey, dest)) {
+                    sha256 = store.getSha256(storeKey);
+                    setStatus("Installed " + fileName + " from the download store, without downloading it.");
+                    AL.debug(this.getClass(), "Installed " + fileName + " from the download store (" + sha256 + ").");
+                    return;
+                }
+            } catch (Exception e) {
+                addWarning(new BWarning(this, e, "Failed to install " + fileName + " from the download store. Downloading it instead."));
+            }
+        }
+
         setStatus("Downloading " + fileName + "... (0kb/0kb)");
         AL.debug(this.getClass(), "Downloading " + fileName + " from: " + url);
 
-        Request request = new Request.Builder().url(url)
-                .header("User-Agent", "AutoPlug Client/" + new Random().nextInt() + " - https://autoplug.online")
-                .build();
+        int maxRetries = 3;
+        if (GD.CONFIG != null && GD.CONFIG.downloadRetries.asString() != null)
+            maxRetries = GD.CONFIG.downloadRetries.asInt();
+        long retryDelayMs = 1000;
+        for (int retry = 0; ; retry++) {
+            try {
+                downloadPart(part, partValidator, fileName);
+                break;
+            } catch (Exception e) {
+                if (retry >= maxRetries || !isRetryable(e)) throw e;
+                AL.debug(this.getClass(), "Download of " + fileName + " failed, retrying in " + retryDelayMs + "ms: " + e.getMessage());
+                setStatus("Download of " + fileName + " failed, retrying in " + retryDelayMs / 1000 + "s (" + (retry + 1) + "/" + maxRetries + ")...");
+                Thread.sleep(retryDelayMs);
+                retryDelayMs = Math.min(retryDelayMs * 2, 30000);
+            }
+        }
+
+        String recordedSha256 = getRecordedSha256(url, plLatestVersion);
+        if (recordedSha256 == null && store != null) recordedSha256 = store.getSha256(storeKey);
+        try {
+            verify(part, recordedSha256);
+        } catch (Exception e) {
+            part.delete();
+            partValidator.delete();
+            throw e;
+        }
 
-        Response response = new OkHttpClient().newCall(request).execute();
+        // The download url is the same for all versions, thus a mirror may still serve the previous jar right after a release.
+        // Only record/store downloads whose size matched the size reported for this version, so that such a jar isn't recorded as this version.
+        // Premium download urls contain the version id, thus those are always for the right version.
+        if (recordedSha256 == null && (expectedFileSize > 0 || isPremium))
+            recordSha256(url, plLatestVersion, sha256);
+        if (store != null && expectedFileSize > 0) {
+            try {
+                store.add(storeKey, part, sha256);
+            } catch (Exception e) {
+                addWarning(new BWarning(this, e, "Failed to add " + fileName + " to the download store."));
+            }
+        }
+        UtilsFiles.moveAtomically(part, dest);
+        partValidator.delete();
+    }
+
+    private void downloadPart(File part, File partValidator, String fileName) throws Exception {
+        long existingSize = part.exists() ? part.length() : 0;
+        String validator = null;
+        if (existingSize > 0 && partValidator.exists())
+            validator = new String(Files.readAllBytes(partValidator.toPath()), StandardCharsets.UTF_8).trim();
+
+        Request.Builder requestBuilder = new Request.Builder().url(url)
+                .header("User-Agent", userAgent != null ? userAgent : "AutoPlug Client/" + new Random().nextInt() + " - https://autoplug.online")
+                .cacheControl(new CacheControl.Builder().noStore().build()); // Jars don't belong into the http cache
+        if (validator != null && !validator.isEmpty()) {
+            // If-Range makes the server send the complete file instead, if it changed in the meantime
+            requestBuilder.header("Range", "bytes=" + existingSize + "-")
+                    .header("If-Range", validator);
+        }
+
+        Response response = (client != null ? client : UtilsHttp.getClient()).newCall(requestBuilder.build()).execute();
         ResponseBody body = null;
         try {
-            if (response.code() != 200)
-                throw new Exception("Download error for " + plName + " code: " + response.code() + " message: " + response.message() + " url: " + url);
+            boolean isResumed = response.code() == 206;
+            if (response.code() == 416) { // The .part file doesn't fit the file on the server, thus start over
+                part.delete();
+                partValidator.delete();
+                throw new IOException("Download of '" + dest.getName() + "' can't be resumed and gets restarted.");
+            }
+            if (response.code() != 200 && !isResumed)
+                throw new HttpStatusException(response.code(), "Download error for " + plName + ": " + response.message(), url);
 
             body = response.body();
             if (body == null)
@@ -149,27 +266,58 @@ public class TaskPluginDownload extends BThread {
             ))
                 throw new Exception("Download of '" + dest.getName() + "' failed because of invalid sub-content type: " + body.contentType().subtype());
 
-            long completeFileSize = body.contentLength();
-            setMax(completeFileSize);
+            if (isResumed) {
+                String contentRange = response.header("Content-Range"); // Example: bytes 1000-1999/2000
+                if (contentRange == null || !contentRange.startsWith("bytes " + existingSize + "-"))
+                    throw new Exception("Download of '" + dest.getName() + "' failed because of unexpected content range: " + contentRange);
+                AL.debug(this.getClass(), "Resuming download of " + fileName + " at " + existingSize / 1024 + "kb.");
+            } else {
+                existingSize = 0;
+                // Remember what file we are downloading, so that an interrupted download can be resumed.
+                // Only strong ETags are allowed in If-Range.
+                String newValidator = response.header("ETag");
+                if (newValidator == null || newValidator.startsWith("W/"))
+                    newValidator = response.header("Last-Modified");
+                if (newValidator != null)
+                    Files.write(partValidator.toPath(), newValidator.getBytes(StandardCharsets.UTF_8));
+                else
+                    partValidator.delete();
+            }
 
-            BufferedInputStream in = new BufferedInputStream(body.byteStream());
-            FileOutputStream fos = new FileOutputStream(dest);
-            BufferedOutputStream bout = new BufferedOutputStream(fos, 1024);
-            byte[] data = new byte[1024];
-            long downloadedFileSize = 0;
-            int x = 0;
-            while ((x = in.read(data, 0, 1024)) >= 0) {
-                downloadedFileSize += x;
+            // Hash the bytes while they are written, so that the file doesn't have to be read again afterwards
+            MessageDigest digest = UtilsHash.newSha256();
+            if (isResumed) UtilsHash.update(digest, part);
+            DigestingChannel source = new DigestingChannel(body.source(), digest);
 
-                setStatus("Downloading " + fileName + "... (" + downloadedFileSize / 1024 + "kb/" + completeFileSize / 1024 + "kb)");
-                setNow(downloadedFileSize);
+            long completeFileSize = body.contentLength() < 0 ? -1 : existingSize + body.contentLength();
+            setMax(completeFileSize);
 
-                bout.write(data, 0, x);
-            }
+            // The response source is a channel itself, thus the bytes go straight from
+            // the socket buffer into the file, without copying them through byte arrays.
+            long downloadedFileSize = existingSize;
+            long lastStatusUpdate = 0;
+            try (FileChannel out = isResumed
+                    ? FileChannel.open(part.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE)
+                    : FileChannel.open(part.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                long x;
+                while ((x = out.transferFrom(source, downloadedFileSize, TRANSFER_CHUNK_SIZE)) > 0) {
+                    downloadedFileSize += x;
+
+                    // Updating the status for every chunk would cost more than the transfer itself
+                    long now = System.currentTimeMillis();
+                    if (now - lastStatusUpdate >= STATUS_UPDATE_INTERVAL_MS) {
+                        lastStatusUpdate = now;
+                        setStatus("Downloading " + fileName + "... (" + downloadedFileSize / 1024 + "kb/" + completeFileSize / 1024 + "kb)");
+                        setNow(downloadedFileSize);
+                    }
+                }
+            } // Keeps what was downloaded so far in the .part file
+            setNow(downloadedFileSize);
 
+            if (completeFileSize >= 0 && downloadedFileSize != completeFileSize)
+                throw new IOException("Download of '" + dest.getName() + "' ended early at " + downloadedFileSize + " of " + completeFileSize + " bytes!");
+            sha256 = UtilsHash.toHex(digest.digest());
             setStatus("Downloaded " + fileName + " (" + downloadedFileSize / 1024 + "kb/" + completeFileSize / 1024 + "kb)");
-            bout.close();
-            in.close();
             body.close();
             response.close();
         } catch (Exception e) {
@@ -179,6 +327,81 @@ public class TaskPluginDownload extends BThread {
         }
     }
 
+    /**
+     * Rejects the download before it gets installed, if it's not a jar, its size is way off from what the api reported,
+     * or its hash differs from the hash recorded for this plugin version earlier. <br>
+     * Size and hash were computed while downloading, thus only the first 4 bytes of the file get read here.
+     *
+     * @param recordedSha256 the hash recorded for this url and version, or null if there is none.
+     */
+    private void verify(File part, String recordedSha256) throws Exception {
+        long size = part.length();
+        if (size < 4)
+            throw new Exception("Download of '" + dest.getName() + "' failed verification, because the file is only " + size + " bytes big!");
+
+        byte[] magic = new byte[4];
+        try (DataInputStream in = new DataInputStream(new FileInputStream(part))) {
+            in.readFully(magic);
+        }
+        // Jars are zip files, which start with 'PK\3\4'
+        if (magic[0] != 'P' || magic[1] != 'K' || magic[2] != 3 || magic[3] != 4)
+            throw new Exception("Download of '" + dest.getName() + "' failed verification, because it is not a jar/zip file!");
+
+        // The api only reports a rounded size (for example 2.3 MB), thus allow some tolerance
+        if (expectedFileSize > 0) {
+            long tolerance = expectedFileSize / 10 + 100 * 1024;
+            if (Math.abs(size - expectedFileSize) > tolerance)
+                throw new Exception("Download of '" + dest.getName() + "' failed verification, because its size (" + size
+                        + " bytes) differs too much from the expected size (about " + expectedFileSize + " bytes)!");
+        }
+
+        if (recordedSha256 != null && !recordedSha256.equals(sha256))
+            throw new Exception("Download of '" + dest.getName() + "' failed verification, because its SHA-256 hash (" + sha256
+                    + ") differs from the hash recorded for this version earlier (" + recordedSha256 + ")!");
+    }
+
+    private static String getSha256Key(String url, String version) {
+        return "download." + url + "|" + version + ".sha256";
+    }
+
+    /**
+     * Returns the SHA-256 hash of the first verified download of this url and version,
+     * or null if there is none, or the {@link StateStore} isn't available. <br>
+     * Unlike the {@link DownloadStore} the state is always there, thus the hash is checked even if the download store is disabled.
+     */
+    static String getRecordedSha256(String url, String version) {
+        try {
+            return StateStore.get().get(getSha256Key(url, version));
+        } catch (Exception e) {
+            AL.warn("Failed to read the recorded hash of '" + url + "' from the state.", e);
+            return null;
+        }
+    }
+
+    /**
+     * Records the provided hash for this url and version, so that later downloads of the same version get checked against it. <br>
+     * The state gets committed by the updater, once all downloads are done.
+     */
+    static void recordSha256(String url, String version, String sha256) {
+        try {
+            StateStore.get().put(getSha256Key(url, version), sha256);
+        } catch (Exception e) {
+            AL.warn("Failed to record the hash of '" + url + "' in the state.", e);
+        }
+    }
+
+    /**
+     * Connection problems and server-side errors are worth another attempt,
+     * wrong content types or missing files aren't.
+     */
+    private boolean isRetryable(Exception e) {
+        if (e instanceof HttpStatusException) {
+            int code = ((HttpStatusException) e).getHttpErrorCode();
+            return code >= 500 || code == 408 || code == 429;
+        }
+        return e instanceof IOException;
+    }
+
     public String getPlName() {
         return plName;
     }
@@ -207,6 +430,44 @@ public class TaskPluginDownload extends BThread {
         return dest;
     }
 
+    /**
+     * Returns the SHA-256 hash of the downloaded jar, or null if nothing was downloaded yet.
+     */
+    public String getSha256() {
+        return sha256;
+    }
+
+    /**
+     * Sets the approximate size in bytes the downloaded jar should have, or -1 to skip this check.
+     */
+    public void setExpectedFileSize(long expectedFileSize) {
+        this.expectedFileSize = expectedFileSize;
+    }
+
+    /**
+     * Sets the client and user agent used for the download, for example to send session cookies. <br>
+     * By default the shared client from {@link UtilsHttp#getClient()} is used.
+     */
+    public void setHttpClient(OkHttpClient client, String userAgent) {
+        this.client = client;
+        this.userAgent = userAgent;
+    }
+
+    /**
+     * If false, a failed download doesn't add a warning, but only remembers why it failed (see {@link #getFailure()}),
+     * since the caller retries it in another way, for example with the browser. True by default.
+     */
+    public void setReportingFailure(boolean reportingFailure) {
+        this.isReportingFailure = reportingFailure;
+    }
+
+    /**
+     * Returns the reason why the download failed, if failures are not reported, otherwise null.
+     */
+    public Exception getFailure() {
+        return failure;
+    }
+
     public boolean isDownloadSuccessful() {
         return isDownloadSuccessful;
     }
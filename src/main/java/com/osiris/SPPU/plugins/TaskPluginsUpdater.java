@@ -11,7 +11,12 @@ package com.osiris.SPPU.plugins;
 import com.osiris.SPPU.Main;
 import com.osiris.SPPU.plugins.search.SearchMaster;
 import com.osiris.SPPU.plugins.search.SearchResult;
+import com.osiris.SPPU.plugins.search.spigot.SpigotDeltaSync;
+import com.osiris.SPPU.plugins.search.spigot.SpigotResourceIndex;
 import com.osiris.SPPU.utils.GD;
+import com.osiris.SPPU.utils.HttpStatusException;
+import com.osiris.SPPU.utils.StateStore;
+import com.osiris.autoplug.core.logger.AL;
 import com.osiris.betterthread.BThread;
 import com.osiris.betterthread.BThreadManager;
 import com.osiris.betterthread.BWarning;
@@ -25,10 +30,17 @@ import org.jsoup.nodes.Document;
 import java.io.File;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 
 import static com.osiris.SPPU.utils.GD.CONFIG;
 
@@ -38,8 +50,11 @@ public class TaskPluginsUpdater extends BThread {
     private final String manualProfile = "MANUAL";
     private final String automaticProfile = "AUTOMATIC";
 
-    private final List<TaskPluginDownload> downloadTasksList = new ArrayList<>();
-    private final List<TaskPremiumSpigotPluginDownload> premiumDownloadTasksList = new ArrayList<>();
+    /**
+     * Running download tasks mapped to the search result they were started for.
+     */
+    private final Map<TaskPluginDownload, SearchResult> downloadTasks = new LinkedHashMap<>();
+    private final Map<TaskPremiumSpigotPluginDownload, SearchResult> premiumDownloadTasks = Collections.synchronizedMap(new LinkedHashMap<>());
     @NotNull
     private final List<DetailedPlugin> includedPlugins = new ArrayList<>();
     @NotNull
@@ -49,6 +64,7 @@ public class TaskPluginsUpdater extends BThread {
     private String userProfile;
     private String pluginsConfigName;
     private int updatesAvailable = 0;
+    private StateStore state;
 
     public TaskPluginsUpdater(String name, BThreadManager manager) {
         super(name, manager);
@@ -65,8 +81,12 @@ public class TaskPluginsUpdater extends BThread {
         YamlSection async = CONFIG.async;
         YamlSection spigotUsername = CONFIG.spigotUsername;
         YamlSection spigotPassword = CONFIG.spigotPassword;
-        YamlSection spigotUsernameOld = CONFIG.spigotUsernameOld;
-        YamlSection spigotPasswordOld = CONFIG.spigotPasswordOld;
+        this.state = StateStore.get();
+        // The config only gets saved if the user needs to see something new in it
+        boolean isConfigChanged = migrateStateFromConfig(name) || CONFIG.hasMissingSettings();
+        // Only a salted fingerprint of the credentials used for the last login is stored, never the credentials themselves
+        boolean isSpigotCredentialsChanged = !SpigotAuthenticator.isSameCredentials(state.get("spigot.credentials"),
+                spigotUsername.asString(), spigotPassword.asString());
 
         PluginManager man = new PluginManager();
         this.allPlugins.addAll(man.getPlugins());
@@ -78,9 +98,10 @@ public class TaskPluginsUpdater extends BThread {
                     if (pl.getName() == null || pl.getName().isEmpty())
                         throw new Exception("The plugins name couldn't be determined for '" + pl.getInstallationPath() + "'!");
 
-                    YamlSection exclude = CONFIG.put(name, plName, "exclude").setDefValues("false"); // Check this plugin?
+                    YamlSection exclude = CONFIG.put(name, plName, "exclude");
+                    if (exclude.getValues().isEmpty()) isConfigChanged = true; // New plugin
+                    exclude.setDefValues("false"); // Check this plugin?
                     YamlSection version = CONFIG.put(name, plName, "version").setDefValues(pl.getVersion());
-                    YamlSection latestVersion = CONFIG.put(name, plName, "latest-version");
                     YamlSection author = CONFIG.put(name, plName, "author").setDefValues(pl.getAuthor());
                     YamlSection spigotId = CONFIG.put(name, plName, "spigot-id").setDefValues("0");
                     //YamlSection songodaId = new YamlSection(config, getModules(), name, plName,+".songoda-id", 0); // TODO WORK_IN_PROGRESS
@@ -89,31 +110,34 @@ public class TaskPluginsUpdater extends BThread {
                     YamlSection customCheckURL = CONFIG.put(name, plName, "custom-check-url");
                     YamlSection customDownloadURL = CONFIG.put(name, plName, "custom-download-url");
 
-                    // The plugin devs can add their spigot/bukkit ids to their plugin.yml files
-                    if (pl.getSpigotId() != 0 && spigotId.asString() != null && spigotId.asInt() == 0) // Don't update the value, if the user has already set it
-                        spigotId.setValues("" + pl.getSpigotId());
-                    if (pl.getBukkitId() != 0 && bukkitId.asString() != null && bukkitId.asInt() == 0)
-                        bukkitId.setValues("" + pl.getBukkitId());
+                    // The ids set by the user come first, then the ids the plugin devs added to their plugin.yml files,
+                    // and lastly the ids found by earlier searches
+                    if (spigotId.asString() != null && spigotId.asInt() != 0)
+                        pl.setSpigotId(spigotId.asInt());
+                    else if (pl.getSpigotId() == 0)
+                        pl.setSpigotId(parseId(state.get("plugin." + plName + ".spigot-id")));
+                    if (bukkitId.asString() != null && bukkitId.asInt() != 0)
+                        pl.setBukkitId(bukkitId.asInt());
+                    else if (pl.getBukkitId() == 0)
+                        pl.setBukkitId(parseId(state.get("plugin." + plName + ".bukkit-id")));
 
                     // Update the detailed plugins in-memory values
-                    pl.setSpigotId(spigotId.asInt());
-                    pl.setBukkitId(bukkitId.asInt());
                     pl.setIgnoreContentType(ignoreContentType.asBoolean());
                     pl.setCustomLink(customDownloadURL.asString());
 
                     // Check for missing author in plugin.yml
                     if ((pl.getVersion() == null || pl.getVersion().trim().isEmpty())
-                            && (spigotId.asString() == null || spigotId.asInt() == 0)
-                            && (bukkitId.asString() == null || bukkitId.asInt() == 0)) {
+                            && pl.getSpigotId() == 0 && pl.getBukkitId() == 0 && !exclude.asBoolean()) {
                         exclude.setValues("true");
+                        isConfigChanged = true;
                         this.addWarning("Plugin " + pl.getName() + " is missing 'version' in its plugin.yml file and was excluded.");
                     }
 
                     // Check for missing version in plugin.yml
                     if ((pl.getAuthor() == null || pl.getAuthor().trim().isEmpty())
-                            && (spigotId.asString() == null || spigotId.asInt() == 0)
-                            && (bukkitId.asString() == null || bukkitId.asInt() == 0)) {
+                            && pl.getSpigotId() == 0 && pl.getBukkitId() == 0 && !exclude.asBoolean()) {
                         exclude.setValues("true");
+                        isConfigChanged = true;
                         this.addWarning("Plugin " + pl.getName() + " is missing 'author' or 'authors' in its plugin.yml file and was excluded.");
                     }
 
@@ -129,11 +153,25 @@ public class TaskPluginsUpdater extends BThread {
                 }
             }
 
-        if (keep_removed.asBoolean())
-            CONFIG.save();
-        else {
-            CONFIG.save(true); // This overwrites the file and removes everything else that wasn't added via the add method before.
+        // Removed plugins only change the config, if their sections get removed
+        List<String> pluginNames = new ArrayList<>();
+        for (DetailedPlugin pl :
+                allPlugins) {
+            pluginNames.add(pl.getName());
         }
+        Collections.sort(pluginNames);
+        String joinedPluginNames = String.join("\n", pluginNames);
+        if (!keep_removed.asBoolean() && !joinedPluginNames.equals(state.get("config.plugin-names")))
+            isConfigChanged = true;
+
+        if (isConfigChanged) {
+            if (keep_removed.asBoolean())
+                CONFIG.save();
+            else {
+                CONFIG.save(true); // This overwrites the file and removes everything else that wasn't added via the add method before.
+            }
+        }
+        state.put("config.plugin-names", joinedPluginNames);
         pluginsConfigName = CONFIG.getFileNameWithoutExt();
 
         // First we get the latest plugin details from the yml config.
@@ -150,34 +188,69 @@ public class TaskPluginsUpdater extends BThread {
         int sizeCustomLinkPlugins = 0;
         int sizeUnknownPlugins = 0;
 
-        ExecutorService executorService;
-        if (async.asBoolean())
-            executorService = Executors.newFixedThreadPool(size);
-        else
-            executorService = Executors.newSingleThreadExecutor();
-        List<Future<SearchResult>> activeFutures = new ArrayList<>();
+        int threads = 1;
+        if (async.asBoolean()) {
+            threads = CONFIG.asyncThreads.asString() != null ? CONFIG.asyncThreads.asInt() : 8;
+            if (threads <= 0) threads = Runtime.getRuntime().availableProcessors() * 2;
+            threads = Math.min(threads, size);
+        }
+        // Find out which spigot resources changed since the last run, to skip checking the others
+        SpigotDeltaSync deltaSync = null;
+        if (CONFIG.deltaSync.asString() != null && CONFIG.deltaSync.asBoolean()) {
+            setStatus("Fetching recently updated spigot resources...");
+            deltaSync = new SpigotDeltaSync(new File(GD.SPPU_DIR + "/delta-sync.json"));
+            try {
+                deltaSync.load();
+                deltaSync.sync();
+            } catch (Exception e) {
+                getWarnings().add(new BWarning(this, e, "Failed to fetch recently updated spigot resources. Checking all plugins instead."));
+            }
+        }
+
+        // The searches for unknown plugins only use the local index, if it's ready before they start
+        if (CONFIG.spigotIndex.asString() != null && CONFIG.spigotIndex.asBoolean()) {
+            for (DetailedPlugin pl :
+                    includedPlugins) {
+                if (pl.getSpigotId() == 0 && pl.getBukkitId() == 0
+                        && (pl.getCustomLink() == null || pl.getCustomLink().isEmpty())) {
+                    setStatus("Refreshing the local spigot resource index...");
+                    SpigotResourceIndex.loadAndRefresh();
+                    break;
+                }
+            }
+        }
+
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        // Hands out each search result as soon as it is done, in completion order
+        CompletionService<SearchResult> completionService = new ExecutorCompletionService<>(executorService);
+        int submittedSearches = 0;
         for (DetailedPlugin pl :
                 includedPlugins) {
             try {
                 setStatus("Initialising update check for  " + pl.getName() + "...");
-                if (pl.getSpigotId() != 0) {
+                SearchResult unchangedResult = deltaSync != null ? deltaSync.getUnchangedResult(pl) : null;
+                if (unchangedResult != null) {
+                    sizeSpigotPlugins++; // SPIGOT PLUGIN, without changes since the last check
+                    completionService.submit(() -> unchangedResult);
+                } else if (pl.getSpigotId() != 0) {
                     sizeSpigotPlugins++; // SPIGOT PLUGIN
-                    activeFutures.add(executorService.submit(() -> new SearchMaster().searchBySpigotId(pl)));
+                    completionService.submit(() -> new SearchMaster().searchBySpigotId(pl));
                 } else if (pl.getBukkitId() != 0) {
                     sizeBukkitPlugins++; // BUKKIT PLUGIN
-                    activeFutures.add(executorService.submit(() -> new SearchMaster().searchByBukkitId(pl)));
+                    completionService.submit(() -> new SearchMaster().searchByBukkitId(pl));
                 } else if (pl.getCustomLink() != null && !pl.getCustomLink().isEmpty()) {
                     sizeCustomLinkPlugins++; // CUSTOM LINK PLUGIN
                     if (pl.getSpigotId() != 0)
-                        activeFutures.add(executorService.submit(() -> new SearchMaster().searchBySpigotId(pl)));
+                        completionService.submit(() -> new SearchMaster().searchBySpigotId(pl));
                     else if (pl.getBukkitId() != 0)
-                        activeFutures.add(executorService.submit(() -> new SearchMaster().searchByBukkitId(pl)));
+                        completionService.submit(() -> new SearchMaster().searchByBukkitId(pl));
                     else
-                        activeFutures.add(executorService.submit(() -> new SearchMaster().unknownSearch(pl)));
+                        completionService.submit(() -> new SearchMaster().unknownSearch(pl));
                 } else {
                     sizeUnknownPlugins++; // UNKNOWN PLUGIN
-                    activeFutures.add(executorService.submit(() -> new SearchMaster().unknownSearch(pl)));
+                    completionService.submit(() -> new SearchMaster().unknownSearch(pl));
                 }
+                submittedSearches++;
             } catch (Exception e) {
                 this.getWarnings().add(new BWarning(this, e, "Critical error while searching for update for '" + pl.getName() + "' plugin!"));
             }
@@ -185,20 +258,9 @@ public class TaskPluginsUpdater extends BThread {
 
         List<SearchResult> updatablePremiumSpigotPlugins = new ArrayList<>();
         List<SearchResult> results = new ArrayList<>();
-        while (!activeFutures.isEmpty()) {
-            Thread.sleep(250);
-            Future<SearchResult> finishedFuture = null;
-            for (Future<SearchResult> future :
-                    activeFutures) {
-                if (future.isDone()) {
-                    finishedFuture = future;
-                    break;
-                }
-            }
-
-            if (finishedFuture != null) {
-                activeFutures.remove(finishedFuture);
-                SearchResult result = finishedFuture.get();
+        try {
+            for (int i = 0; i < submittedSearches; i++) {
+                SearchResult result = completionService.take().get(); // Blocks until the next search is done
                 results.add(result);
                 DetailedPlugin pl = result.getPlugin();
                 byte code = result.getResultCode();
@@ -208,6 +270,7 @@ public class TaskPluginsUpdater extends BThread {
                 String resultSpigotId = result.getSpigotId();
                 String resultBukkitId = result.getBukkitId();
                 this.setStatus("Checked '" + pl.getName() + "' plugin (" + results.size() + "/" + size + ")");
+                if (deltaSync != null) deltaSync.update(result);
                 if (code == 0 || code == 1) {
 
                     if (code == 1 && pl.isPremium())
@@ -226,154 +289,148 @@ public class TaskPluginsUpdater extends BThread {
                     getWarnings().add(new BWarning(this, new Exception("Unknown error occurred! Code: " + code + "."), "Notify the developers. Fastest way is through discord (https://discord.gg/GGNmtCC)."));
 
                 try {
-                    YamlSection mSpigotId = CONFIG.get(pluginsConfigName, pl.getName(), "spigot-id");
-                    if (resultSpigotId != null
-                            && (mSpigotId.asString() == null || mSpigotId.asInt() == 0)) // Because we can get a "null" string from the server
-                        mSpigotId.setValues(resultSpigotId);
-
-                    YamlSection mBukkitId = CONFIG.get(pluginsConfigName, pl.getName(), "bukkit-id");
-                    if (resultBukkitId != null
-                            && (mSpigotId.asString() == null || mSpigotId.asInt() == 0)) // Because we can get a "null" string from the server
-                        mBukkitId.setValues(resultBukkitId);
+                    // Remember found ids, so that the next run can search by id
+                    if (parseId(resultSpigotId) != 0) // Because we can get a "null" string from the server
+                        state.put("plugin." + pl.getName() + ".spigot-id", resultSpigotId);
+                    if (parseId(resultBukkitId) != 0)
+                        state.put("plugin." + pl.getName() + ".bukkit-id", resultBukkitId);
 
-                    // The config gets saved at the end of the runAtStart method.
+                    // The state gets committed at the end of the runAtStart method.
                 } catch (Exception e) {
                     getWarnings().add(new BWarning(this, e));
                 }
             }
+        } finally {
+            executorService.shutdownNow(); // All searches are done at this point, unless an exception was thrown
+        }
+        if (deltaSync != null) {
+            try {
+                deltaSync.save();
+            } catch (Exception e) {
+                getWarnings().add(new BWarning(this, e, "Failed to save the results for the next delta sync."));
+            }
         }
 
 
         // Wait until all regular download tasks have finished.
-        while (!downloadTasksList.isEmpty()) {
-            Thread.sleep(1000);
-            TaskPluginDownload finishedDownloadTask = null;
-            for (TaskPluginDownload task :
-                    downloadTasksList) {
-                if (!task.isAlive()) {
-                    finishedDownloadTask = task;
-                    break;
-                }
-            }
-
-            if (finishedDownloadTask != null) {
-                downloadTasksList.remove(finishedDownloadTask);
-                SearchResult matchingResult = null;
-                for (SearchResult result :
-                        results) {
-                    if (result.getPlugin().getName().equals(finishedDownloadTask.getPlName())) {
-                        matchingResult = result;
-                        break;
-                    }
-                }
-                if (matchingResult == null)
-                    throw new Exception("This should not happen! Please report to the devs!");
+        // The tasks run in parallel, thus this only takes as long as the slowest download.
+        for (Map.Entry<TaskPluginDownload, SearchResult> entry :
+                downloadTasks.entrySet()) {
+            TaskPluginDownload task = entry.getKey();
+            task.join();
+            if (task.isDownloadSuccessful())
+                entry.getValue().setResultCode((byte) 5);
+
+            if (task.isInstallSuccessful())
+                entry.getValue().setResultCode((byte) 6);
+        }
+        downloadTasks.clear();
 
-                if (finishedDownloadTask.isDownloadSuccessful())
-                    matchingResult.setResultCode((byte) 5);
+        // Do premium stuff
+        // Only plugins that actually get downloaded need spigotmc.org (not the case for the NOTIFY profile, for example)
+        List<SearchResult> downloadablePremiumSpigotPlugins = new ArrayList<>();
+        for (SearchResult result :
+                updatablePremiumSpigotPlugins) {
+            if (isPremiumDownloadNeeded(result))
+                downloadablePremiumSpigotPlugins.add(result);
+        }
+        updatablePremiumSpigotPlugins = downloadablePremiumSpigotPlugins;
 
-                if (finishedDownloadTask.isInstallSuccessful())
-                    matchingResult.setResultCode((byte) 6);
+        if (!updatablePremiumSpigotPlugins.isEmpty() && CONFIG.premiumBrowserless.asBoolean()
+                && spigotUsername.asString() != null && spigotPassword.asString() != null
+                && !isSpigotCredentialsChanged) { // Otherwise the saved cookies belong to old credentials
+            try {
+                updatablePremiumSpigotPlugins = updatePremiumPluginsWithoutBrowser(updatablePremiumSpigotPlugins);
+            } catch (Exception e) {
+                getWarnings().add(new BWarning(this, e, "Failed to update premium plugins without browser. Using the browser instead."));
             }
         }
 
-        // Do premium stuff
         if (!updatablePremiumSpigotPlugins.isEmpty()) {
             setStatus("Logging in to spigotmc.org...");
             OutputStream debugOut = null;
             if (Main.isDEBUG) debugOut = System.out;
-            try (PlaywrightWindow window = new HBrowser().openCustomWindow().debugOutputStream(debugOut).temporaryUserDataDir(true).headless(false).buildPlaywrightWindow()) {
+            BrowserProfileLock profileLock = null;
+            if (CONFIG.premiumPersistentProfile.asBoolean()) {
+                try {
+                    profileLock = BrowserProfileLock.tryAcquire(new File(GD.SPPU_DIR + "/browser-profile"));
+                    if (profileLock == null)
+                        addInfo("The persistent browser profile is used by another SPPU instance. Using a temporary profile instead.");
+                } catch (Exception e) {
+                    getWarnings().add(new BWarning(this, e, "Failed to lock the persistent browser profile. Using a temporary profile instead."));
+                }
+            }
+            try (BrowserProfileLock ignored = profileLock;
+                 PlaywrightWindow window = profileLock != null ?
+                         new HBrowser().openCustomWindow().debugOutputStream(debugOut)
+                                 .userDataDir(profileLock.getProfileDir()).temporaryUserDataDir(false).headless(false).buildPlaywrightWindow()
+                         : new HBrowser().openCustomWindow().debugOutputStream(debugOut)
+                                 .temporaryUserDataDir(true).headless(false).buildPlaywrightWindow()) {
                 SpigotAuthenticator spigotAuthenticator = new SpigotAuthenticator();
                 spigotAuthenticator.attemptLoginForWindow(window, spigotUsername.asString(), spigotPassword.asString(),
-                        spigotUsernameOld.asString(), spigotPasswordOld.asString()); // Throws exception on login fail
-                spigotUsernameOld.setValues(spigotUsername.asString());
-                spigotPasswordOld.setValues(spigotPassword.asString());
+                        isSpigotCredentialsChanged); // Throws exception on login fail
+                if (isSpigotCredentialsChanged)
+                    state.put("spigot.credentials", SpigotAuthenticator.getCredentialsFingerprint(spigotUsername.asString(), spigotPassword.asString()));
                 setStatus("Logged in successfully! Updating plugins...");
-                for (SearchResult result :
-                        updatablePremiumSpigotPlugins) {
-                    try {
-                        setStatus("Updating premium plugin '" + result.getPlugin().getName() + "' from '" + result.getPlugin().getVersion() + "' to '" + result.getLatestVersion() + "'...");
-                        DetailedPlugin pl = result.getPlugin();
-                        String latest = result.getLatestVersion();
-                        String type = result.getDownloadType();
-                        window.newTab("https://www.spigotmc.org/resources/" + result.getSpigotId());
-                        spigotAuthenticator.waitForCloudflare(window);
-                        Document doc = window.getBodyInnerHtml();
-                        String url = "https://www.spigotmc.org/" + doc.getElementsByClass("downloadButton")
-                                .get(0).getElementsByTag("a").get(0).attr("href"); // The download or purchase buttons <a> tag with the download link
-
-                        if (url.contains("/purchase"))
-                            throw new Exception("Premium update failed, because you do not own this premium plugin.");
-
-                        if (result.getResultCode() == 0) {
-                            //getSummary().add("Plugin " +pl.getName()+ " is already on the latest version (" + pl.getVersion() + ")"); // Only for testing right now
-                        } else {
-                            updatesAvailable++;
-
-                            try {
-                                // Update the in-memory config
-                                YamlSection mLatest = CONFIG.get(pluginsConfigName, pl.getName(), "latest-version");
-                                mLatest.setValues(result.getLatestVersion());
-                            } catch (Exception e) {
-                                getWarnings().add(new BWarning(this, e));
-                            }
-
-                            if (userProfile.equals(notifyProfile)) {
-                                addInfo("NOTIFY: Plugin '" + pl.getName() + "' has an update available (" + pl.getVersion() + " -> " + result.getLatestVersion() + ")");
-                            } else {
-                                if (result.getDownloadType().equals(".jar") || result.getDownloadType().equals("external")) { // Note that "external" support is kind off random and strongly dependent on what spigot devs are doing
-                                    if (userProfile.equals(manualProfile)) {
-                                        File cache_dest = new File(GD.SPPU_DOWNLOADS_DIR + pl.getName() + "[" + latest + "].jar");
-                                        TaskPremiumSpigotPluginDownload task = new TaskPremiumSpigotPluginDownload(window, "PremiumPluginDownloader", getManager(), pl.getName(), latest, url, userProfile, cache_dest);
-                                        premiumDownloadTasksList.add(task);
-                                        task.start();
-                                    } else {
-                                        File oldPl = new File(pl.getInstallationPath());
-                                        File dest = new File(GD.WORKING_DIR + "/plugins/" + pl.getName() + "-LATEST-" + "[" + latest + "]" + ".jar");
-                                        TaskPremiumSpigotPluginDownload task = new TaskPremiumSpigotPluginDownload(window, "PremiumPluginDownloader", getManager(), pl.getName(), latest, url, userProfile, dest, oldPl);
-                                        premiumDownloadTasksList.add(task);
-                                        task.start();
-                                    }
-                                } else
-                                    getWarnings().add(new BWarning(this, new Exception("Failed to download plugin update(" + latest + ") for " + pl.getName() + " because of unsupported type: " + type)));
-                            }
-                        }
-
-                    } catch (Exception e) {
-                        getWarnings().add(new BWarning(this, e, "Premium plugin '" + result.getPlugin().getName() + "' update to '" + result.getLatestVersion() + "' failed!"));
-                    }
-                }
 
-                // Wait until all download tasks have finished.
-                while (!premiumDownloadTasksList.isEmpty()) {
-                    Thread.sleep(1000);
-                    TaskPremiumSpigotPluginDownload finishedDownloadTask = null;
-                    for (TaskPremiumSpigotPluginDownload task :
-                            premiumDownloadTasksList) {
-                        if (!task.isAlive()) {
-                            finishedDownloadTask = task;
+                // Each window processes one plugin at a time, thus open more windows to process multiple plugins in parallel.
+                // The additional windows share the session of the first window, instead of logging in again.
+                int maxWindows = 2;
+                if (CONFIG.premiumWindows.asString() != null)
+                    maxWindows = CONFIG.premiumWindows.asInt();
+                maxWindows = Math.max(1, Math.min(maxWindows, updatablePremiumSpigotPlugins.size()));
+                List<PlaywrightWindow> windows = new ArrayList<>();
+                windows.add(window);
+                ExecutorService windowExecutor = null;
+                try {
+                    while (windows.size() < maxWindows) {
+                        PlaywrightWindow additionalWindow = new HBrowser().openCustomWindow().debugOutputStream(debugOut)
+                                .temporaryUserDataDir(true).headless(false).buildPlaywrightWindow();
+                        windows.add(additionalWindow); // Gets closed in finally, even if the login fails
+                        try {
+                            spigotAuthenticator.copySession(window, additionalWindow);
+                        } catch (Exception e) {
+                            windows.remove(additionalWindow);
+                            additionalWindow.close();
+                            getWarnings().add(new BWarning(this, e, "Failed to login in additional browser window. Updating premium plugins with " + windows.size() + " window(s)."));
                             break;
                         }
                     }
 
-                    if (finishedDownloadTask != null) {
-                        premiumDownloadTasksList.remove(finishedDownloadTask);
-                        SearchResult matchingResult = null;
-                        for (SearchResult result :
-                                results) {
-                            if (result.getPlugin().getName().equals(finishedDownloadTask.getPlName())) {
-                                matchingResult = result;
-                                break;
-                            }
-                        }
-                        if (matchingResult == null)
-                            throw new Exception("This should not happen! Please report to the devs!");
+                    BlockingQueue<SearchResult> queue = new LinkedBlockingQueue<>(updatablePremiumSpigotPlugins);
+                    windowExecutor = Executors.newFixedThreadPool(windows.size());
+                    List<Future<?>> windowWorkers = new ArrayList<>();
+                    for (PlaywrightWindow w :
+                            windows) {
+                        windowWorkers.add(windowExecutor.submit(() -> {
+                            SpigotAuthenticator authenticator = new SpigotAuthenticator();
+                            SearchResult result;
+                            while ((result = queue.poll()) != null)
+                                updatePremiumPluginWithBrowser(w, authenticator, result);
+                        }));
+                    }
+                    for (Future<?> worker :
+                            windowWorkers) {
+                        worker.get();
+                    }
 
-                        if (finishedDownloadTask.isDownloadSuccessful())
-                            matchingResult.setResultCode((byte) 5);
+                    // Wait until all download tasks have finished, since they use the windows.
+                    for (Map.Entry<TaskPremiumSpigotPluginDownload, SearchResult> entry :
+                            premiumDownloadTasks.entrySet()) {
+                        TaskPremiumSpigotPluginDownload task = entry.getKey();
+                        task.join();
+                        if (task.isDownloadSuccessful())
+                            entry.getValue().setResultCode((byte) 5);
 
-                        if (finishedDownloadTask.isInstallSuccessful())
-                            matchingResult.setResultCode((byte) 6);
+                        if (task.isInstallSuccessful())
+                            entry.getValue().setResultCode((byte) 6);
+                    }
+                    premiumDownloadTasks.clear();
+                } finally {
+                    if (windowExecutor != null) windowExecutor.shutdownNow();
+                    for (PlaywrightWindow w :
+                            windows) {
+                        if (w != window) w.close(); // The first window gets closed by try-with-resources
                     }
                 }
 
@@ -382,11 +439,150 @@ public class TaskPluginsUpdater extends BThread {
             }
         }
 
-        CONFIG.save();
+        try {
+            state.commit();
+        } catch (Exception e) {
+            getWarnings().add(new BWarning(this, e, "Failed to save the plugins state."));
+        }
 
         finish("Finished checking all plugins (" + results.size() + "/" + size + ")");
     }
 
+    /**
+     * Resolves the download links of the provided premium plugins (which all need to be downloaded) with plain HTTP requests,
+     * using the session cookies from the last browser login, and downloads them in parallel. <br>
+     * Returns the plugins that couldn't be resolved this way (no or expired session, cloudflare challenge),
+     * which need to be updated with the browser.
+     */
+    @NotNull
+    private List<SearchResult> updatePremiumPluginsWithoutBrowser(@NotNull List<SearchResult> premiumResults) throws Exception {
+        SpigotHttpSession session = SpigotHttpSession.load(new File(GD.SPPU_DIR + "/spigot-cookies.json"));
+        if (session == null) return premiumResults;
+
+        setStatus("Updating premium plugins without browser...");
+        List<SearchResult> unresolved = new ArrayList<>();
+        for (int i = 0; i < premiumResults.size(); i++) {
+            SearchResult result = premiumResults.get(i);
+            DetailedPlugin pl = result.getPlugin();
+            String latest = result.getLatestVersion();
+            try {
+                String url = session.getDownloadUrl(result.getSpigotId());
+                if (url == null) {
+                    // The session won't work for the remaining plugins either
+                    AL.debug(this.getClass(), "Failed to access spigotmc.org without browser, using the browser for the remaining " + (premiumResults.size() - i) + " premium plugin(s).");
+                    unresolved.addAll(premiumResults.subList(i, premiumResults.size()));
+                    break;
+                }
+
+                TaskPluginDownload task;
+                if (userProfile.equals(manualProfile)) {
+                    File cache_dest = new File(GD.SPPU_DOWNLOADS_DIR + pl.getName() + "[" + latest + "].jar");
+                    task = new TaskPluginDownload("PremiumPluginDownloader", getManager(), pl.getName(), latest, url, true, userProfile, cache_dest, null, true);
+                } else {
+                    File oldPl = new File(pl.getInstallationPath());
+                    File dest = new File(GD.WORKING_DIR + "/plugins/" + pl.getName() + "-LATEST-" + "[" + latest + "]" + ".jar");
+                    task = new TaskPluginDownload("PremiumPluginDownloader", getManager(), pl.getName(), latest, url, true, userProfile, dest, oldPl, true);
+                }
+                task.setHttpClient(session.getClient(), session.getUserAgent());
+                task.setReportingFailure(false); // Failed downloads get retried with the browser
+                downloadTasks.put(task, result);
+                task.start();
+            } catch (HttpStatusException e) {
+                AL.info("Failed to load the page of premium plugin '" + pl.getName() + "' without browser (" + e.getMessage() + "). Using the browser instead.");
+                unresolved.add(result);
+            } catch (Exception e) {
+                getWarnings().add(new BWarning(this, e, "Premium plugin '" + pl.getName() + "' update to '" + latest + "' failed!"));
+            }
+        }
+
+        for (Map.Entry<TaskPluginDownload, SearchResult> entry :
+                downloadTasks.entrySet()) {
+            TaskPluginDownload task = entry.getKey();
+            task.join();
+            if (task.isDownloadSuccessful())
+                entry.getValue().setResultCode((byte) 5);
+
+            if (task.isInstallSuccessful())
+                entry.getValue().setResultCode((byte) 6);
+
+            if (!task.isDownloadSuccessful()) {
+                // For example a cloudflare challenge, an expired session (login page instead of the jar), or a failed verification
+                Exception failure = task.getFailure();
+                AL.info("Failed to download premium plugin '" + entry.getValue().getPlugin().getName() + "' without browser ("
+                        + (failure != null ? failure.getMessage() : "unknown reason") + "). Using the browser instead.");
+                unresolved.add(entry.getValue());
+            }
+        }
+        downloadTasks.clear();
+        return unresolved;
+    }
+
+    /**
+     * Resolves the download link of the provided premium plugin in the provided (logged in) window,
+     * and starts its download in that window. Only gets called for plugins that need to be downloaded,
+     * see {@link #isPremiumDownloadNeeded(SearchResult)}. Gets called by multiple threads at the same time, each with its own window.
+     */
+    private void updatePremiumPluginWithBrowser(@NotNull PlaywrightWindow window, @NotNull SpigotAuthenticator spigotAuthenticator,
+                                                @NotNull SearchResult result) {
+        try {
+            setStatus("Updating premium plugin '" + result.getPlugin().getName() + "' from '" + result.getPlugin().getVersion() + "' to '" + result.getLatestVersion() + "'...");
+            DetailedPlugin pl = result.getPlugin();
+            String latest = result.getLatestVersion();
+            window.newTab("https://www.spigotmc.org/resources/" + result.getSpigotId());
+            spigotAuthenticator.waitForCloudflare(window);
+            Document doc = window.getBodyInnerHtml();
+            String url = "https://www.spigotmc.org/" + doc.getElementsByClass("downloadButton")
+                    .get(0).getElementsByTag("a").get(0).attr("href"); // The download or purchase buttons <a> tag with the download link
+
+            if (url.contains("/purchase"))
+                throw new Exception("Premium update failed, because you do not own this premium plugin.");
+
+            TaskPremiumSpigotPluginDownload task;
+            if (userProfile.equals(manualProfile)) {
+                File cache_dest = new File(GD.SPPU_DOWNLOADS_DIR + pl.getName() + "[" + latest + "].jar");
+                task = new TaskPremiumSpigotPluginDownload(window, "PremiumPluginDownloader", getManager(), pl.getName(), latest, url, userProfile, cache_dest);
+            } else {
+                File oldPl = new File(pl.getInstallationPath());
+                File dest = new File(GD.WORKING_DIR + "/plugins/" + pl.getName() + "-LATEST-" + "[" + latest + "]" + ".jar");
+                task = new TaskPremiumSpigotPluginDownload(window, "PremiumPluginDownloader", getManager(), pl.getName(), latest, url, userProfile, dest, oldPl);
+            }
+            premiumDownloadTasks.put(task, result);
+            task.start();
+        } catch (Exception e) {
+            synchronized (this) {
+                getWarnings().add(new BWarning(this, e, "Premium plugin '" + result.getPlugin().getName() + "' update to '" + result.getLatestVersion() + "' failed!"));
+            }
+        }
+    }
+
+    /**
+     * Counts the premium update, stores its latest version and checks if the profile and download type allow downloading it.
+     */
+    private boolean isPremiumDownloadNeeded(@NotNull SearchResult result) {
+        DetailedPlugin pl = result.getPlugin();
+        String type = result.getDownloadType();
+        if (result.getResultCode() == 0) {
+            //getSummary().add("Plugin " +pl.getName()+ " is already on the latest version (" + pl.getVersion() + ")"); // Only for testing right now
+            return false;
+        }
+        updatesAvailable++;
+
+        try {
+            state.put("plugin." + pl.getName() + ".latest-version", result.getLatestVersion());
+        } catch (Exception e) {
+            getWarnings().add(new BWarning(this, e));
+        }
+
+        if (userProfile.equals(notifyProfile)) {
+            addInfo("NOTIFY: Plugin '" + pl.getName() + "' has an update available (" + pl.getVersion() + " -> " + result.getLatestVersion() + ")");
+            return false;
+        }
+        if (type.equals(".jar") || type.equals("external")) // Note that "external" support is kind off random and strongly dependent on what spigot devs are doing
+            return true;
+        getWarnings().add(new BWarning(this, new Exception("Failed to download plugin update(" + result.getLatestVersion() + ") for " + pl.getName() + " because of unsupported type: " + type)));
+        return false;
+    }
+
     private void doDownloadLogic(@NotNull SearchResult result) {
         byte code = result.getResultCode();
         @NotNull String type = result.getDownloadType();
@@ -399,9 +595,7 @@ public class TaskPluginsUpdater extends BThread {
             updatesAvailable++;
 
             try {
-                // Update the in-memory config
-                YamlSection mLatest = CONFIG.get(pluginsConfigName, pl.getName(), "latest-version");
-                mLatest.setValues(latest); // Gets saved later
+                state.put("plugin." + pl.getName() + ".latest-version", latest); // Gets committed later
             } catch (Exception e) {
                 getWarnings().add(new BWarning(this, e));
             }
@@ -414,13 +608,15 @@ public class TaskPluginsUpdater extends BThread {
                         if (userProfile.equals(manualProfile)) {
                             File cache_dest = new File(GD.SPPU_DOWNLOADS_DIR + pl.getName() + "[" + latest + "].jar");
                             TaskPluginDownload task = new TaskPluginDownload("PluginDownloader", getManager(), pl.getName(), latest, url, pl.getIgnoreContentType(), userProfile, cache_dest);
-                            downloadTasksList.add(task);
+                            task.setExpectedFileSize(result.getExpectedFileSize());
+                            downloadTasks.put(task, result);
                             task.start();
                         } else {
                             File oldPl = new File(pl.getInstallationPath());
                             File dest = new File(GD.WORKING_DIR + "/plugins/" + pl.getName() + "-LATEST-" + "[" + latest + "]" + ".jar");
                             TaskPluginDownload task = new TaskPluginDownload("PluginDownloader", getManager(), pl.getName(), latest, url, pl.getIgnoreContentType(), userProfile, dest, oldPl);
-                            downloadTasksList.add(task);
+                            task.setExpectedFileSize(result.getExpectedFileSize());
+                            downloadTasks.put(task, result);
                             task.start();
                         }
                     }
@@ -431,6 +627,55 @@ public class TaskPluginsUpdater extends BThread {
 
     }
 
+    /**
+     * Moves the state, that older versions stored in the config (old spigot credentials and latest versions),
+     * into the {@link StateStore} and removes it from the config. <br>
+     * Returns true if something was moved, which means that the config needs to be saved.
+     */
+    private boolean migrateStateFromConfig(String name) {
+        boolean isMigrated = false;
+        try {
+            YamlSection usernameOld = CONFIG.get(name, "general", "spigotmc.org-username-old");
+            YamlSection passwordOld = CONFIG.get(name, "general", "spigotmc.org-password-old");
+            if (usernameOld != null || passwordOld != null) {
+                if (state.get("spigot.credentials") == null
+                        && usernameOld != null && usernameOld.asString() != null && passwordOld != null && passwordOld.asString() != null)
+                    state.put("spigot.credentials", SpigotAuthenticator.getCredentialsFingerprint(usernameOld.asString(), passwordOld.asString()));
+                if (usernameOld != null) CONFIG.remove(name, "general", "spigotmc.org-username-old");
+                if (passwordOld != null) CONFIG.remove(name, "general", "spigotmc.org-password-old");
+                isMigrated = true;
+            }
+
+            YamlSection root = CONFIG.get(name);
+            if (root != null)
+                for (YamlSection section :
+                        new ArrayList<>(root.getChildSections())) { // Contains the plugins, also the removed ones
+                    String plName = section.getKey();
+                    YamlSection latestVersion = CONFIG.get(name, plName, "latest-version");
+                    if (latestVersion == null) continue;
+                    if (latestVersion.asString() != null && state.get("plugin." + plName + ".latest-version") == null)
+                        state.put("plugin." + plName + ".latest-version", latestVersion.asString());
+                    CONFIG.remove(name, plName, "latest-version");
+                    isMigrated = true;
+                }
+        } catch (Exception e) {
+            getWarnings().add(new BWarning(this, e, "Failed to move the state from the config to " + GD.SPPU_DIR.getName() + "/state.log."));
+        }
+        return isMigrated;
+    }
+
+    /**
+     * Returns the id from the provided string, or 0 if it's null or not a number.
+     */
+    private int parseId(String id) {
+        if (id == null) return 0;
+        try {
+            return Integer.parseInt(id.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
     /**
      * Returns a list containing only plugins, that contain all the information needed to perform a search. <br>
      * That means, that a plugin must have its name, its authors name and its version in its plugin.yml file.
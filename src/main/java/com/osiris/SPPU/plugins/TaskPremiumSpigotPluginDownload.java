@@ -9,14 +9,15 @@
 package com.osiris.SPPU.plugins;
 
 import com.osiris.SPPU.utils.GD;
+import com.osiris.SPPU.utils.UtilsFiles;
+import com.osiris.SPPU.utils.UtilsHash;
 import com.osiris.autoplug.core.logger.AL;
 import com.osiris.betterthread.BThread;
 import com.osiris.betterthread.BThreadManager;
+import com.osiris.betterthread.BWarning;
 import com.osiris.headlessbrowser.windows.PlaywrightWindow;
 
 import java.io.File;
-import java.nio.file.Files;
-import java.nio.file.StandardCopyOption;
 
 public class TaskPremiumSpigotPluginDownload extends BThread {
     private final String plName;
@@ -82,12 +83,13 @@ public class TaskPremiumSpigotPluginDownload extends BThread {
             download();
             isDownloadSuccessful = true;
         } else {
-            download();
+            // Download directly next to the final destination, so that the
+            // installation is a single atomic rename of the completed download.
+            download(finalDest);
             isDownloadSuccessful = true;
-            if (finalDest.exists()) finalDest.delete();
-            finalDest.createNewFile();
-            if (deleteDest != null && deleteDest.exists()) deleteDest.delete();
-            Files.copy(dest.toPath(), finalDest.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            if (deleteDest != null && deleteDest.exists()
+                    && !deleteDest.getCanonicalFile().equals(finalDest.getCanonicalFile()))
+                deleteDest.delete();
             isInstallSuccessful = true;
             setStatus("Installed update for " + plName + " successfully!");
         }
@@ -97,19 +99,53 @@ public class TaskPremiumSpigotPluginDownload extends BThread {
         File dir = new File(GD.WORKING_DIR + "/autoplug/downloads");
         if (!dir.exists()) dir.mkdirs();
 
-        dest = new File(dir + "/" + plName + "-[" + plLatestVersion + "].jar");
-        if (dest.exists()) dest.delete();
-        dest.createNewFile();
+        download(new File(dir + "/" + plName + "-[" + plLatestVersion + "].jar"));
+    }
+
+    /**
+     * Downloads into a '.part' file next to the provided file, which then gets
+     * flushed to disk and atomically renamed to the provided file.
+     */
+    public void download(File dest) throws Exception {
+        this.dest = dest;
+        File part = new File(dest.getPath() + ".part");
+        if (part.exists()) part.delete();
 
         final String fileName = dest.getName();
+        DownloadStore store = DownloadStore.get();
+        String storeKey = DownloadStore.getKey(url, plLatestVersion);
+        if (store != null) {
+            try {
+                if (store.install(storeKey, dest)) {
+                    setStatus("Installed " + fileName + " from the download store, without downloading it.");
+                    return;
+                }
+            } catch (Exception e) {
+                addWarning(new BWarning(this, e, "Failed to install " + fileName + " from the download store. Downloading it instead."));
+            }
+        }
+
         setStatus("Downloading " + fileName + "...");
         AL.debug(this.getClass(), "Downloading " + fileName + " from: " + url);
 
-        try {
-            window.download(url, dest);
-        } catch (Exception e) {
-            throw e;
+        window.download(url, part);
+        String sha256 = UtilsHash.sha256(part); // The browser downloads the file, thus it can't be hashed on the fly
+        String recordedSha256 = TaskPluginDownload.getRecordedSha256(url, plLatestVersion);
+        if (recordedSha256 == null && store != null) recordedSha256 = store.getSha256(storeKey);
+        if (recordedSha256 != null && !recordedSha256.equals(sha256)) {
+            part.delete();
+            throw new Exception("Download of '" + fileName + "' failed verification, because its SHA-256 hash (" + sha256
+                    + ") differs from the hash recorded for this version earlier (" + recordedSha256 + ")!");
+        }
+        if (recordedSha256 == null) TaskPluginDownload.recordSha256(url, plLatestVersion, sha256);
+        if (store != null) {
+            try {
+                store.add(storeKey, part, sha256);
+            } catch (Exception e) {
+                addWarning(new BWarning(this, e, "Failed to add " + fileName + " to the download store."));
+            }
         }
+        UtilsFiles.moveAtomically(part, dest);
     }
 
     public String getPlName() {
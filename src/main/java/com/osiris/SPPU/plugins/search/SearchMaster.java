@@ -13,7 +13,9 @@ import com.osiris.SPPU.plugins.DetailedPlugin;
 import com.osiris.SPPU.plugins.search.bukkit.BukkitSearchById;
 import com.osiris.SPPU.plugins.search.spigot.SpigotSearchByAuthor;
 import com.osiris.SPPU.plugins.search.spigot.SpigotSearchById;
+import com.osiris.SPPU.plugins.search.spigot.SpigotSearchByIndex;
 import com.osiris.SPPU.plugins.search.spigot.SpigotSearchByName;
+import com.osiris.SPPU.utils.GD;
 
 public class SearchMaster {
 
@@ -29,6 +31,12 @@ public class SearchMaster {
         // Before passing over remove everything except words and numbers
         plugin.setAuthor(plugin.getAuthor().replaceAll("[^\\w]", ""));
 
+        // Do search in the local index, which only needs the network to confirm the result
+        if (GD.CONFIG != null && GD.CONFIG.spigotIndex.asString() != null && GD.CONFIG.spigotIndex.asBoolean()) {
+            SearchResult result_index = new SpigotSearchByIndex().search(plugin);
+            if (result_index != null) return result_index;
+        }
+
         // Do spigot search by name
         SearchResult result_spigot = new SpigotSearchByName().search(plugin);
 
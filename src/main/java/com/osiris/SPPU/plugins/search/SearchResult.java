@@ -25,6 +25,7 @@ public class SearchResult {
     boolean isPremium;
     private byte resultCode;
     private Exception exception;
+    private long expectedFileSize = -1;
 
     /**
      * @param resultCode    All codes: <br>
@@ -78,6 +79,17 @@ public class SearchResult {
         this.exception = exception;
     }
 
+    /**
+     * Returns the approximate size in bytes of the latest versions file as reported by the api, or -1 if unknown.
+     */
+    public long getExpectedFileSize() {
+        return expectedFileSize;
+    }
+
+    public void setExpectedFileSize(long expectedFileSize) {
+        this.expectedFileSize = expectedFileSize;
+    }
+
     public String getLatestVersion() {
         return latestVersion;
     }
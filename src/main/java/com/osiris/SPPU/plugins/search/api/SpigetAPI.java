@@ -10,8 +10,9 @@ package com.osiris.SPPU.plugins.search.api;
 
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
-import com.osiris.autoplug.core.json.JsonTools;
-import com.osiris.autoplug.core.json.exceptions.HttpErrorException;
+import com.osiris.SPPU.utils.HttpStatusException;
+import com.osiris.SPPU.utils.TtlCache;
+import com.osiris.SPPU.utils.UtilsHttp;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -35,6 +36,9 @@ public class SpigetAPI {
     private final static String SORT_DESC_LIKES = "&sort=-likes";
     private final static String SORT_BY_RATINGS = "&sort=-rating";
 
+    private final static TtlCache<String, JsonObject> AUTHOR_DETAILS_CACHE = new TtlCache<>(SpigetCachePolicy.TTL_AUTHOR * 1000);
+    private final static TtlCache<String, JsonArray> AUTHOR_RESOURCES_CACHE = new TtlCache<>(SpigetCachePolicy.TTL_AUTHOR * 1000);
+
 
     /**
      * Get a JsonArray containing spigot plugins
@@ -42,8 +46,8 @@ public class SpigetAPI {
      */
     public JsonArray getPlugins(String queryPlName) throws Exception {
         try {
-            return new JsonTools().getJsonArray(LINK_SEARCH_RESOURCES + queryPlName);
-        } catch (HttpErrorException e) {
+            return UtilsHttp.getJsonArray(LINK_SEARCH_RESOURCES + queryPlName);
+        } catch (HttpStatusException e) {
             if (e.getHttpErrorCode() != 404)
                 throw e;
             // Only catch this exception and only ignore this exception if code 404,
@@ -58,8 +62,8 @@ public class SpigetAPI {
      */
     public JsonArray getAuthors(String queryAuthorName) throws Exception {
         try {
-            return new JsonTools().getJsonArray(LINK_SEARCH_AUTHORS + queryAuthorName);
-        } catch (HttpErrorException e) {
+            return UtilsHttp.getJsonArray(LINK_SEARCH_AUTHORS + queryAuthorName);
+        } catch (HttpStatusException e) {
             if (e.getHttpErrorCode() != 404)
                 throw e;
             // Only catch and ignore this exception if code 404,
@@ -69,43 +73,57 @@ public class SpigetAPI {
     }
 
     /**
-     * Get a JsonObject containing author details.
+     * Get a JsonObject containing author details. <br>
+     * Results are cached in memory for {@link SpigetCachePolicy#TTL_AUTHOR} seconds,
+     * since many plugins share the same few authors.
      */
     public JsonObject getAuthorDetails(String authorId) throws Exception {
         if (authorId == null || authorId.equals("0"))
             throw new Exception("AuthorID is either null or equals '0'!"); // TODO ISSUE OPEN HERE: https://github.com/SpiGetOrg/Spiget/issues/32
 
-        try {
-            return new JsonTools().getJsonObject(LINK_AUTHORS + authorId);
-        } catch (HttpErrorException e) {
-            if (e.getHttpErrorCode() != 404)
-                throw e;
-            // Only catch and ignore this exception if code 404,
-            // because it just means that it couldn't find results from that query.
-        }
-        return null;
+        return AUTHOR_DETAILS_CACHE.get(authorId, () -> {
+            try {
+                return UtilsHttp.getJsonObject(LINK_AUTHORS + authorId);
+            } catch (HttpStatusException e) {
+                if (e.getHttpErrorCode() != 404)
+                    throw e;
+                // Only catch and ignore this exception if code 404,
+                // because it just means that it couldn't find results from that query.
+            }
+            return null;
+        });
     }
 
     /**
-     * Get a JsonArray containing author resources.
+     * Get a JsonArray containing author resources. <br>
+     * Results are cached in memory, see {@link #getAuthorDetails(String)}.
      */
     public JsonArray getAuthorResources(String authorId) throws Exception {
-        try {
-            return new JsonTools().getJsonArray(LINK_AUTHORS + authorId + "/resources?size=100&sort=-downloads");
-            // Limit the max size to 100 and sort by most downloads to increase the chance of a match.
-        } catch (HttpErrorException e) {
-            if (e.getHttpErrorCode() != 404)
-                throw e;
-            // Only catch and ignore this exception if code 404,
-            // because it just means that it couldn't find results from that query.
-        }
-        return new JsonArray(); // Returns an empty array
+        return AUTHOR_RESOURCES_CACHE.get(authorId, () -> {
+            try {
+                return UtilsHttp.getJsonArray(LINK_AUTHORS + authorId + "/resources?size=100&sort=-downloads");
+                // Limit the max size to 100 and sort by most downloads to increase the chance of a match.
+            } catch (HttpStatusException e) {
+                if (e.getHttpErrorCode() != 404)
+                    throw e;
+                // Only catch and ignore this exception if code 404,
+                // because it just means that it couldn't find results from that query.
+            }
+            return new JsonArray(); // Returns an empty array
+        });
+    }
+
+    /**
+     * Get a JsonObject containing the resource details, like its file, premium state and latest version id.
+     */
+    public JsonObject getResourceDetails(String resourceId) throws Exception {
+        return UtilsHttp.getJsonObject(LINK_API + "resources/" + resourceId);
     }
 
     public JsonObject getVersionDetails(String pluginId, String versionId) throws Exception {
         try {
-            return new JsonTools().getJsonObject(LINK_API + "resources/" + pluginId + "/versions/" + versionId);
-        } catch (HttpErrorException e) {
+            return UtilsHttp.getJsonObject(LINK_API + "resources/" + pluginId + "/versions/" + versionId);
+        } catch (HttpStatusException e) {
             if (e.getHttpErrorCode() != 404)
                 throw e;
             // Only catch and ignore this exception if code 404,
@@ -118,7 +136,7 @@ public class SpigetAPI {
      * Get the latest version from this spigot plugin id.
      */
     public String getLatestVersion(String spigotId) throws Exception {
-        return new JsonTools().getJsonArray("https://api.spiget.org/v2/resources/" + spigotId +
+        return UtilsHttp.getJsonArray("https://api.spiget.org/v2/resources/" + spigotId +
                 "/versions?size=1&sort=-releaseDate").get(0).getAsJsonObject().get("name").getAsString();
     }
 
@@ -134,8 +152,8 @@ public class SpigetAPI {
         List<JsonObject> objectList = new ArrayList<>();
         JsonArray ja = null;
         try {
-            ja = new JsonTools().getJsonArray(url);
-        } catch (HttpErrorException e) {
+            ja = UtilsHttp.getJsonArray(url);
+        } catch (HttpStatusException e) {
             if (e.getHttpErrorCode() != 404)
                 throw e;
             // Only catch and ignore this exception if code 404,
@@ -149,6 +167,18 @@ public class SpigetAPI {
         return objectList;
     }
 
+    /**
+     * Gets one page of all spigot resources, with only the provided fields.
+     *
+     * @param size   the maximum amount of resources on this page.
+     * @param page   the page, starting at 1.
+     * @param sort   the field to sort by, for example 'id' or '-updateDate'.
+     * @param fields the comma separated fields to return, for example 'id,name'.
+     */
+    public JsonArray getResourcesPage(int size, int page, String sort, String fields) throws Exception {
+        return UtilsHttp.getJsonArray(LINK_RESOURCES + size + "&page=" + page + "&sort=" + sort + "&fields=" + fields);
+    }
+
     /**
      * Gets a list of plugins sorted by user query without size limit and sorted by downloads.
      *
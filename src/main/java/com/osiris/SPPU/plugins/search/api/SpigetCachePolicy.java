@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2021 Osiris-Team.
+ * All rights reserved.
+ *
+ * This software is copyrighted work, licensed under the terms
+ * of the MIT-License. Consult the "LICENSE" file for details.
+ */
+
+package com.osiris.SPPU.plugins.search.api;
+
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.Response;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Network interceptor that decides for how long responses from Spiget are
+ * served from the HTTP cache, without asking the server again. <br>
+ * Once that time is over, the cached response gets revalidated with
+ * 'If-None-Match'/'If-Modified-Since', which means that an unchanged
+ * resource only costs a '304 Not Modified' without body. <br>
+ * Resource details, version lists and resource feeds are revalidated on every request, since they are
+ * what update checks depend on. A resources file size must match its latest version, thus
+ * the details can't be older than the version list. Author details on the other hand barely ever change.
+ */
+public class SpigetCachePolicy implements Interceptor {
+    public static final String HOST = "api.spiget.org";
+    public static final long TTL_VERSIONS = 0;
+    public static final long TTL_SEARCH = 60 * 60;
+    public static final long TTL_AUTHOR = 24 * 60 * 60;
+
+    /**
+     * Returns the amount of seconds a response from this Spiget url stays fresh,
+     * or -1 if it must not be cached at all.
+     */
+    public static long getTtlSeconds(@NotNull HttpUrl url) {
+        List<String> segments = url.pathSegments(); // Example: [v2, resources, 1234, versions]
+        if (segments.contains("download")) return -1; // Plugin jars, which are handled by the download tasks
+        if (segments.size() < 2) return 0;
+        switch (segments.get(1)) {
+            case "authors":
+                return TTL_AUTHOR;
+            case "search":
+                return TTL_SEARCH;
+            case "resources":
+                return TTL_VERSIONS; // resources/{id}, resources/{id}/versions, and the resources feeds
+            default:
+                return 0;
+        }
+    }
+
+    @NotNull
+    @Override
+    public Response intercept(@NotNull Chain chain) throws IOException {
+        Response response = chain.proceed(chain.request());
+        HttpUrl url = chain.request().url();
+        if (!url.host().equals(HOST) || !chain.request().method().equals("GET"))
+            return response;
+
+        long ttl = getTtlSeconds(url);
+        return response.newBuilder()
+                .removeHeader("Pragma")
+                .header("Cache-Control", ttl < 0 ? "no-store" : "max-age=" + ttl)
+                .build();
+    }
+}
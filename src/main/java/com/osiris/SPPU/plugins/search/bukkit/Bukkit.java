@@ -11,17 +11,11 @@ package com.osiris.SPPU.plugins.search.bukkit;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
 import com.osiris.SPPU.utils.StringComparator;
+import com.osiris.SPPU.utils.UtilsHttp;
 import com.osiris.SPPU.utils.UtilsVersion;
 import com.osiris.autoplug.core.logger.AL;
 
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
-
 /**
  * Returns download-url via ServerMods API (https://bukkit.gamepedia.com/ServerMods_API) <br>
  * Cannot be used, because not safe.
@@ -62,7 +56,7 @@ public class Bukkit {
                 result_pl_name[i] = result_pl_name[i].replaceAll("[^a-zA-Z0-9]", "");
                 pl_name = pl_name.replaceAll("[^a-zA-Z0-9]", "");
 
-                double similarity = StringComparator.similarity(result_pl_name[i], pl_name);
+                double similarity = StringComparator.similarity(result_pl_name[i], pl_name, 0.8);
                 AL.info("Similarity between -> " + pl_name + " and " + result_pl_name[i] + " is: " + similarity);
                 if (similarity > 0.8) {
 
@@ -105,14 +99,9 @@ public class Bukkit {
 
         try {
 
-            URL url = new URL(request_url + search_input);
-            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-            connection.addRequestProperty("User-Agent", "Mozilla/5.0");
-            InputStream inputStream = connection.getInputStream();
-            InputStreamReader reader = new InputStreamReader(inputStream);
-            return JsonParser.parseReader(reader);
+            return UtilsHttp.getJsonElement(request_url + search_input);
 
-        } catch (IOException e) {
+        } catch (Exception e) {
             AL.warn(e);
             return null;
         }
@@ -12,8 +12,8 @@ import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import com.osiris.SPPU.plugins.DetailedPlugin;
 import com.osiris.SPPU.plugins.search.SearchResult;
+import com.osiris.SPPU.utils.UtilsHttp;
 import com.osiris.SPPU.utils.UtilsVersion;
-import com.osiris.autoplug.core.json.JsonTools;
 import com.osiris.autoplug.core.logger.AL;
 
 import java.util.regex.Matcher;
@@ -36,7 +36,7 @@ public class BukkitSearchById {
         String downloadType = "unknown";
         byte code = 0;
         try {
-            versions = new JsonTools().getJsonArray(url);
+            versions = UtilsHttp.getJsonArray(url);
             json = versions.get(versions.size() - 1).getAsJsonObject();
             latest = json.get("name").getAsString();
             downloadUrl = json.get("downloadUrl").getAsString();
@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2021 Osiris-Team.
+ * All rights reserved.
+ *
+ * This software is copyrighted work, licensed under the terms
+ * of the MIT-License. Consult the "LICENSE" file for details.
+ */
+
+package com.osiris.SPPU.plugins.search.spigot;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.osiris.SPPU.plugins.DetailedPlugin;
+import com.osiris.SPPU.plugins.search.SearchResult;
+import com.osiris.SPPU.plugins.search.api.SpigetAPI;
+import com.osiris.SPPU.utils.UtilsFiles;
+import com.osiris.SPPU.utils.UtilsVersion;
+import com.osiris.autoplug.core.logger.AL;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers the results of the last spigot update checks, and reuses them for resources
+ * that weren't updated since then, instead of requesting their latest version again. <br>
+ * Which resources were updated is known from the resources feed sorted by update date,
+ * which gets paged back to the newest update date seen by the last sync (the high-water mark).
+ * Thus a run without any updated resources only needs one or two requests. <br>
+ * If the feed can't be read, or too many resources changed, all plugins get checked as usual.
+ */
+public class SpigotDeltaSync {
+    static final int PAGE_SIZE = 100;
+    static final int MAX_PAGES = 20;
+    private static final long MAX_RESULT_AGE_MS = 7 * 24 * 60 * 60 * 1000L; // Check everything once in a while anyway
+    private final File file;
+    private final Map<String, Entry> oldEntries = new ConcurrentHashMap<>();
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private long latestUpdateDate; // Newest updateDate (in seconds) seen by the last sync
+    @Nullable
+    private Set<Integer> changedIds; // Null if unknown, which means that everything gets checked
+
+    public SpigotDeltaSync(@NotNull File file) {
+        this.file = file;
+    }
+
+    /**
+     * Loads the results and high-water mark of the last run. Does nothing if the file doesn't exist.
+     */
+    public void load() throws IOException {
+        oldEntries.clear();
+        if (!file.exists() || file.length() == 0) return;
+        try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+            State state = new Gson().fromJson(reader, State.class);
+            if (state == null) return;
+            latestUpdateDate = state.latestUpdateDate;
+            if (state.entries != null) oldEntries.putAll(state.entries);
+        }
+    }
+
+    /**
+     * Writes the high-water mark and the results of the current run to the file. <br>
+     * Results of resources that weren't part of the current run get removed,
+     * since they aren't kept up to date by the syncs.
+     */
+    public void save() throws IOException {
+        State state = new State();
+        state.latestUpdateDate = latestUpdateDate;
+        state.entries = entries;
+        File tmp = new File(file.getPath() + ".tmp");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8)) {
+            new Gson().toJson(state, writer);
+        }
+        UtilsFiles.moveAtomically(tmp, file);
+    }
+
+    /**
+     * Fetches the ids of the resources updated since the last sync and advances the high-water mark. <br>
+     * On the first sync, only the high-water mark gets set.
+     */
+    public void sync() throws Exception {
+        changedIds = null;
+        Set<Integer> ids = new HashSet<>();
+        long newest = latestUpdateDate;
+        for (int page = 1; page <= MAX_PAGES; page++) {
+            JsonArray array = getResourcesPage(page);
+            boolean isCaughtUp = array.size() < PAGE_SIZE;
+            for (JsonElement element : array) {
+                JsonObject json = element.getAsJsonObject();
+                long updateDate = json.get("updateDate").getAsLong();
+                newest = Math.max(newest, updateDate);
+                if (updateDate < latestUpdateDate) { // Resources updated in the same second as the high-water mark count as changed, to not miss any
+                    isCaughtUp = true;
+                    break;
+                }
+                ids.add(json.get("id").getAsInt());
+            }
+            if (latestUpdateDate == 0 || isCaughtUp) {
+                if (latestUpdateDate != 0) {
+                    changedIds = ids;
+                    AL.debug(this.getClass(), ids.size() + " spigot resources were updated since the last sync.");
+                }
+                latestUpdateDate = newest;
+                return;
+            }
+        }
+        // Too many changes to page through. Everything gets checked this time, thus the high-water mark can be advanced anyway.
+        AL.debug(this.getClass(), "More than " + PAGE_SIZE * MAX_PAGES + " spigot resources were updated since the last sync.");
+        latestUpdateDate = newest;
+    }
+
+    /**
+     * Returns the ids and update dates of the resources on this page of the feed, newest updates first.
+     */
+    JsonArray getResourcesPage(int page) throws Exception {
+        return new SpigetAPI().getResourcesPage(PAGE_SIZE, page, "-updateDate", "id,updateDate");
+    }
+
+    /**
+     * Returns the result of the last check of this plugins spigot resource, if it wasn't updated since then. <br>
+     * Returns null if the plugin needs to be checked.
+     */
+    @Nullable
+    public SearchResult getUnchangedResult(@NotNull DetailedPlugin plugin) {
+        int spigotId = plugin.getSpigotId();
+        if (changedIds == null || spigotId == 0 || changedIds.contains(spigotId)) return null;
+        Entry entry = oldEntries.get("" + spigotId);
+        if (entry == null || entry.latestVersion == null
+                || System.currentTimeMillis() - entry.checkedAt > MAX_RESULT_AGE_MS)
+            return null;
+        entries.put("" + spigotId, entry);
+
+        byte code = 0;
+        if (new UtilsVersion().compare(plugin.getVersion(), entry.latestVersion))
+            code = 1;
+        AL.debug(this.getClass(), "[" + plugin.getName() + "] Unchanged since the last check, latest:" + entry.latestVersion + " code:" + code);
+        // The expected file size isn't remembered, so that one wrong size can't fail the downloads verification for days
+        return new SearchResult(plugin, code, entry.latestVersion, entry.downloadUrl, entry.downloadType, "" + spigotId, null, entry.isPremium);
+    }
+
+    /**
+     * Remembers the result of a spigot update check, or forgets the last one, if the check failed.
+     */
+    public void update(@NotNull SearchResult result) {
+        String spigotId = result.getSpigotId();
+        if (spigotId == null || spigotId.equals("0")) {
+            if (result.getPlugin().getSpigotId() != 0)
+                entries.remove("" + result.getPlugin().getSpigotId());
+            return;
+        }
+        if ((result.getResultCode() != 0 && result.getResultCode() != 1) || result.getLatestVersion() == null) {
+            entries.remove(spigotId);
+            return;
+        }
+        if (entries.containsKey(spigotId)) return; // Result from this sync
+        Entry entry = new Entry();
+        entry.latestVersion = result.getLatestVersion();
+        entry.downloadUrl = result.getDownloadUrl();
+        entry.downloadType = result.getDownloadType();
+        entry.isPremium = result.isPremium();
+        entry.checkedAt = System.currentTimeMillis();
+        entries.put(spigotId, entry);
+    }
+
+    private static class State {
+        private long latestUpdateDate;
+        private Map<String, Entry> entries;
+    }
+
+    private static class Entry {
+        private String latestVersion;
+        private String downloadUrl;
+        private String downloadType;
+        private boolean isPremium;
+        private long checkedAt;
+    }
+}
@@ -0,0 +1,368 @@
+/*
+ * Copyright (c) 2021 Osiris-Team.
+ * All rights reserved.
+ *
+ * This software is copyrighted work, licensed under the terms
+ * of the MIT-License. Consult the "LICENSE" file for details.
+ */
+
+package com.osiris.SPPU.plugins.search.spigot;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.osiris.SPPU.plugins.search.api.SpigetAPI;
+import com.osiris.SPPU.utils.GD;
+import com.osiris.SPPU.utils.StringComparator;
+import com.osiris.SPPU.utils.UtilsFiles;
+import com.osiris.autoplug.core.logger.AL;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Local index of all spigot resources (id, name, author id and premium flag), which allows
+ * finding the resource of an unknown plugin by its name, without any requests. <br>
+ * The resources are stored in the compact binary file SPPU/spigot-index.bin. The first run downloads all of them
+ * (a few hundred requests), later runs only download the resources updated since the last refresh.
+ * Once a week the index gets rebuilt completely, to get rid of deleted resources. <br>
+ * Names are looked up in memory, through an index of their trigrams (three character sequences).
+ */
+public class SpigotResourceIndex {
+    private static final int MAGIC = 0x53505249;
+    private static final int FORMAT_VERSION = 1;
+    private static final String FIELDS = "id,name,author,premium,updateDate";
+    private static final int FULL_PAGE_SIZE = 500;
+    private static final int DELTA_PAGE_SIZE = 100;
+    private static final int MAX_DELTA_PAGES = 50;
+    private static final long REFRESH_INTERVAL_MS = 60 * 60 * 1000;
+    private static final long FULL_REFRESH_INTERVAL_MS = 7 * 24 * 60 * 60 * 1000L;
+    private static final double MIN_SIMILARITY = 0.8;
+    private static final int MAX_CANDIDATES = 5;
+    private static volatile SpigotResourceIndex instance;
+
+    private final File file;
+    private final Map<Integer, Resource> resources = new HashMap<>();
+    private long lastRefresh;
+    private long lastFullRefresh;
+    private long latestUpdateDate; // Newest updateDate (in seconds) of all indexed resources
+    private long lastRefreshAttempt;
+    private volatile Lookup lookup = new Lookup(new Resource[0], new HashMap<>());
+
+    public SpigotResourceIndex(@NotNull File file) {
+        this.file = file;
+    }
+
+    /**
+     * Loads the shared index on the first call and refreshes it, if it's older than an hour. <br>
+     * Must be called before the searches start, since downloading the whole index takes a few minutes,
+     * while the searches only use what {@link #get()} returns right now.
+     */
+    public static synchronized void loadAndRefresh() {
+        SpigotResourceIndex index = instance;
+        if (index == null) {
+            index = new SpigotResourceIndex(new File(GD.SPPU_DIR + "/spigot-index.bin"));
+            try {
+                index.load();
+            } catch (Exception e) {
+                AL.warn("Failed to load the local spigot resource index. Downloading it again.", e);
+            }
+            instance = index;
+        }
+        try {
+            index.refreshIfNeeded();
+        } catch (Exception e) {
+            AL.warn("Failed to refresh the local spigot resource index.", e);
+        }
+    }
+
+    /**
+     * Returns the shared index without waiting for it to load or refresh, see {@link #loadAndRefresh()}. <br>
+     * Returns null if the index wasn't loaded yet or is empty, because it couldn't be downloaded.
+     */
+    @Nullable
+    public static SpigotResourceIndex get() {
+        SpigotResourceIndex index = instance;
+        return index == null || index.lookup.resources.length == 0 ? null : index;
+    }
+
+    /**
+     * Returns the resources, whose name is similar to the provided plugin name, the most similar first.
+     */
+    @NotNull
+    public List<Resource> find(@NotNull String pluginName) {
+        String query = normalize(pluginName);
+        if (query.isEmpty()) return new ArrayList<>();
+        Lookup lookup = this.lookup;
+
+        // Count the trigrams each resource has in common with the query
+        Set<Integer> queryTrigrams = new HashSet<>();
+        collectTrigrams(query, queryTrigrams);
+        Map<Integer, Integer> hits = new HashMap<>();
+        for (int trigram : queryTrigrams) {
+            int[] positions = lookup.trigrams.get(trigram);
+            if (positions == null) continue;
+            for (int position : positions)
+                hits.merge(position, 1, Integer::sum);
+        }
+
+        // Only compare the names of resources that have enough trigrams in common
+        int minHits = Math.max(1, queryTrigrams.size() / 2);
+        List<Resource> candidates = new ArrayList<>();
+        Map<Resource, Double> similarities = new HashMap<>();
+        for (Map.Entry<Integer, Integer> entry : hits.entrySet()) {
+            if (entry.getValue() < minHits) continue;
+            Resource resource = lookup.resources[entry.getKey()];
+            double similarity = Math.max(StringComparator.similarity(resource.normalizedTitle, query, MIN_SIMILARITY),
+                    StringComparator.similarity(resource.normalizedName, query, MIN_SIMILARITY));
+            if (similarity <= 0) continue;
+            candidates.add(resource);
+            similarities.put(resource, similarity);
+        }
+        candidates.sort((r1, r2) -> Double.compare(similarities.get(r2), similarities.get(r1)));
+        return candidates.size() > MAX_CANDIDATES ? new ArrayList<>(candidates.subList(0, MAX_CANDIDATES)) : candidates;
+    }
+
+    public synchronized void refreshIfNeeded() throws Exception {
+        long now = System.currentTimeMillis();
+        if (now - lastRefreshAttempt < REFRESH_INTERVAL_MS) return; // Also prevents retrying failed refreshes for every plugin
+        lastRefreshAttempt = now;
+        if (resources.isEmpty() || now - lastFullRefresh > FULL_REFRESH_INTERVAL_MS) {
+            fullRefresh();
+        } else if (now - lastRefresh > REFRESH_INTERVAL_MS) {
+            if (!deltaRefresh()) fullRefresh();
+        } else
+            return;
+        buildLookup();
+        save();
+    }
+
+    private void fullRefresh() throws Exception {
+        AL.info("Downloading the local spigot resource index. This may take a few minutes, but is only done once a week.");
+        SpigetAPI api = new SpigetAPI();
+        Map<Integer, Resource> all = new HashMap<>();
+        long newest = 0;
+        for (int page = 1; ; page++) {
+            JsonArray array = api.getResourcesPage(FULL_PAGE_SIZE, page, "id", FIELDS);
+            for (JsonElement element : array) {
+                JsonObject json = element.getAsJsonObject();
+                Resource resource = parseResource(json);
+                if (resource != null) all.put(resource.id, resource);
+                newest = Math.max(newest, getUpdateDate(json));
+            }
+            if (array.size() < FULL_PAGE_SIZE) break;
+        }
+        resources.clear();
+        resources.putAll(all);
+        latestUpdateDate = newest;
+        lastFullRefresh = lastRefresh = System.currentTimeMillis();
+        AL.debug(this.getClass(), "Downloaded " + resources.size() + " resources into the local index.");
+    }
+
+    /**
+     * Downloads the resources updated since the last refresh, newest first. <br>
+     * Returns false if there are too many of them, in which case a full refresh is faster.
+     */
+    private boolean deltaRefresh() throws Exception {
+        SpigetAPI api = new SpigetAPI();
+        long newest = latestUpdateDate;
+        int updated = 0;
+        for (int page = 1; page <= MAX_DELTA_PAGES; page++) {
+            JsonArray array = api.getResourcesPage(DELTA_PAGE_SIZE, page, "-updateDate", FIELDS);
+            boolean isCaughtUp = array.size() < DELTA_PAGE_SIZE;
+            for (JsonElement element : array) {
+                JsonObject json = element.getAsJsonObject();
+                long updateDate = getUpdateDate(json);
+                if (updateDate < latestUpdateDate) { // Resources updated in the same second as the latest one get fetched again, to not miss any
+                    isCaughtUp = true;
+                    break;
+                }
+                Resource resource = parseResource(json);
+                if (resource != null) resources.put(resource.id, resource);
+                newest = Math.max(newest, updateDate);
+                updated++;
+            }
+            if (isCaughtUp) {
+                latestUpdateDate = newest;
+                lastRefresh = System.currentTimeMillis();
+                AL.debug(this.getClass(), "Updated " + updated + " resources in the local index.");
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Nullable
+    private Resource parseResource(JsonObject json) {
+        if (!json.has("id") || !json.has("name") || json.get("name").isJsonNull()) return null;
+        int authorId = 0;
+        if (json.has("author") && json.get("author").isJsonObject() && json.getAsJsonObject("author").has("id"))
+            authorId = json.getAsJsonObject("author").get("id").getAsInt();
+        boolean isPremium = json.has("premium") && json.get("premium").getAsBoolean();
+        return new Resource(json.get("id").getAsInt(), json.get("name").getAsString(), authorId, isPremium);
+    }
+
+    private long getUpdateDate(JsonObject json) {
+        return json.has("updateDate") ? json.get("updateDate").getAsLong() : 0;
+    }
+
+    /**
+     * Builds the trigram index, which maps each trigram to the positions of the resources, whose name contains it.
+     */
+    private void buildLookup() {
+        Resource[] all = resources.values().toArray(new Resource[0]);
+        Set<Integer> nameTrigrams = new HashSet<>();
+        Map<Integer, Integer> counts = new HashMap<>();
+        for (Resource resource : all) {
+            collectTrigrams(resource.normalizedName, nameTrigrams);
+            for (int trigram : nameTrigrams)
+                counts.merge(trigram, 1, Integer::sum);
+        }
+        Map<Integer, int[]> trigrams = new HashMap<>(counts.size() * 4 / 3 + 1);
+        for (Map.Entry<Integer, Integer> entry : counts.entrySet()) {
+            trigrams.put(entry.getKey(), new int[entry.getValue()]);
+            entry.setValue(0); // Now used as the fill position
+        }
+        for (int position = 0; position < all.length; position++) {
+            collectTrigrams(all[position].normalizedName, nameTrigrams);
+            for (int trigram : nameTrigrams)
+                trigrams.get(trigram)[counts.merge(trigram, 1, Integer::sum) - 1] = position;
+        }
+        this.lookup = new Lookup(all, trigrams);
+    }
+
+    /**
+     * Loads the resources from the file. Does nothing if the file doesn't exist or has an older format.
+     */
+    public synchronized void load() throws IOException {
+        if (!file.exists()) return;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) return;
+            lastFullRefresh = in.readLong();
+            lastRefresh = in.readLong();
+            latestUpdateDate = in.readLong();
+            int count = in.readInt();
+            resources.clear();
+            for (int i = 0; i < count; i++) {
+                int id = in.readInt();
+                int authorId = in.readInt();
+                boolean isPremium = in.readBoolean();
+                resources.put(id, new Resource(id, in.readUTF(), authorId, isPremium));
+            }
+        }
+        buildLookup();
+    }
+
+    /**
+     * Writes the resources to a temporary file first, which then replaces the actual file.
+     */
+    public synchronized void save() throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(lastFullRefresh);
+            out.writeLong(lastRefresh);
+            out.writeLong(latestUpdateDate);
+            out.writeInt(resources.size());
+            for (Resource resource : resources.values()) {
+                out.writeInt(resource.id);
+                out.writeInt(resource.authorId);
+                out.writeBoolean(resource.isPremium);
+                out.writeUTF(resource.name);
+            }
+        }
+        UtilsFiles.moveAtomically(tmp, file);
+    }
+
+    /**
+     * Adds the trigrams of the provided normalized string to the provided set (after clearing it). <br>
+     * The string gets padded with a space on both sides, so that short names and their first/last characters count too.
+     */
+    private static void collectTrigrams(String normalized, Set<Integer> trigrams) {
+        trigrams.clear();
+        int length = normalized.length();
+        for (int i = -1; i < length - 1; i++) {
+            char c1 = i < 0 ? ' ' : normalized.charAt(i);
+            char c2 = normalized.charAt(i + 1);
+            char c3 = i + 2 < length ? normalized.charAt(i + 2) : ' ';
+            trigrams.add((c1 << 16) | (c2 << 8) | c3); // Only ascii characters remain after normalizing
+        }
+    }
+
+    /**
+     * Returns the lower case letters and digits of the provided string, without anything else.
+     */
+    private static String normalize(String s) {
+        StringBuilder builder = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = Character.toLowerCase(s.charAt(i));
+            if ((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')) builder.append(c);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Resource names often contain a description after the actual name, like 'EssentialsX | The essential plugin'. <br>
+     * Returns the normalized actual name.
+     */
+    private static String normalizeTitle(String name) {
+        int end = name.length();
+        for (String separator : new String[]{"|", " - ", "[", "(", ":", "\u00BB", "\u2022", "\u2013", "\u2014"}) {
+            int index = name.indexOf(separator);
+            if (index > 0 && index < end) end = index;
+        }
+        String title = normalize(name.substring(0, end));
+        return title.isEmpty() ? normalize(name) : title;
+    }
+
+    public static class Resource {
+        private final int id;
+        private final String name;
+        private final int authorId;
+        private final boolean isPremium;
+        private final String normalizedName;
+        private final String normalizedTitle;
+
+        public Resource(int id, String name, int authorId, boolean isPremium) {
+            this.id = id;
+            this.name = name;
+            this.authorId = authorId;
+            this.isPremium = isPremium;
+            this.normalizedName = normalize(name);
+            this.normalizedTitle = normalizeTitle(name);
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getAuthorId() {
+            return authorId;
+        }
+
+        public boolean isPremium() {
+            return isPremium;
+        }
+    }
+
+    /**
+     * The resources and their trigram index, which get replaced together on refresh,
+     * thus searches running at the same time keep using the old ones.
+     */
+    private static class Lookup {
+        private final Resource[] resources;
+        private final Map<Integer, int[]> trigrams;
+
+        private Lookup(Resource[] resources, Map<Integer, int[]> trigrams) {
+            this.resources = resources;
+            this.trigrams = trigrams;
+        }
+    }
+}
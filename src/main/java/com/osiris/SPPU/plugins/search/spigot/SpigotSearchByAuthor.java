@@ -37,7 +37,7 @@ public class SpigotSearchByAuthor {
                 JsonObject jAuthor = jsonAuthors.get(i).getAsJsonObject();
                 String jAuthorName = jAuthor.get("name").getAsString();
 
-                double similarity = StringComparator.similarity(jAuthorName, plAuthor);
+                double similarity = StringComparator.similarity(jAuthorName, plAuthor, 0.6);
                 AL.debug(this.getClass(), "[" + plugin.getName() + "] Similarity between -> " + plAuthor + " and " + jAuthorName + " is: " + similarity);
 
                 if (similarity > 0.6) {
@@ -50,7 +50,7 @@ public class SpigotSearchByAuthor {
                         JsonObject jPL = jsonAuthorPlugins.get(j).getAsJsonObject();
                         String jPLName = jPL.get("name").getAsString();
                         String jPLID = jPL.get("id").getAsString();
-                        double similarity2 = StringComparator.similarity(jPLName, plName);
+                        double similarity2 = StringComparator.similarity(jPLName, plName, 0.5);
                         AL.debug(this.getClass(), "[" + plugin.getName() + "] Similarity between -> " + plName + " and " + jPLName + " is: " + similarity2);
                         if (similarity2 > 0.5) {
                             AL.debug(this.getClass(), "[" + plugin.getName() + "] Plugin found!: " + jPLName);
@@ -11,8 +11,8 @@ package com.osiris.SPPU.plugins.search.spigot;
 import com.google.gson.JsonObject;
 import com.osiris.SPPU.plugins.DetailedPlugin;
 import com.osiris.SPPU.plugins.search.SearchResult;
+import com.osiris.SPPU.plugins.search.api.SpigetAPI;
 import com.osiris.SPPU.utils.UtilsVersion;
-import com.osiris.autoplug.core.json.JsonTools;
 import com.osiris.autoplug.core.logger.AL;
 
 public class SpigotSearchById {
@@ -21,25 +21,26 @@ public class SpigotSearchById {
         int spigotId = plugin.getSpigotId();
         Exception exception = null;
 
-        String url = "https://api.spiget.org/v2/resources/" + spigotId +
-                "/versions?size=1&sort=-releaseDate";
-        AL.debug(this.getClass(), "[" + plugin.getName() + "] Fetching latest release... (" + url + ")");
+        AL.debug(this.getClass(), "[" + plugin.getName() + "] Fetching latest release and resource details... (id: " + spigotId + ")");
         String latest = null;
         String type = null;
         String downloadUrl = null;
         byte code = 0;
         boolean isPremium = false;
+        long expectedFileSize = -1;
         try {
+            SpigetAPI spigetAPI = new SpigetAPI();
             // Get the latest version
-            latest = new JsonTools().getJsonArray(url).get(0).getAsJsonObject().get("name").getAsString();
+            latest = spigetAPI.getLatestVersion("" + spigotId);
 
-            // Get the file type and downloadUrl
-            String url1 = "https://api.spiget.org/v2/resources/" + spigotId;
-            AL.debug(this.getClass(), "[" + plugin.getName() + "] Fetching resource details... (" + url1 + ")");
-            JsonObject json = new JsonTools().getJsonObject(url1).getAsJsonObject("file");
-            isPremium = Boolean.parseBoolean(new JsonTools().getJsonObject(url1).get("premium").getAsString());
+            // Get the file type, downloadUrl and premium state from a single resource request
+            JsonObject resource = spigetAPI.getResourceDetails("" + spigotId);
+            JsonObject json = resource.getAsJsonObject("file");
+            isPremium = Boolean.parseBoolean(resource.get("premium").getAsString());
             type = json.get("type").getAsString();
             downloadUrl = "https://www.spigotmc.org/" + json.get("url").getAsString();
+            if (json.has("size") && json.has("sizeUnit"))
+                expectedFileSize = toBytes(json.get("size").getAsDouble(), json.get("sizeUnit").getAsString());
 
             // If not external download over the spiget api
             downloadUrl = "https://api.spiget.org/v2/resources/" + spigotId + "/download";
@@ -54,6 +55,25 @@ public class SpigotSearchById {
         AL.debug(this.getClass(), "[" + plugin.getName() + "] Finished check with results: code:" + code + " latest:" + latest + " downloadURL:" + downloadUrl + " type:" + type + " ");
         SearchResult result = new SearchResult(plugin, code, latest, downloadUrl, type, "" + spigotId, null, isPremium);
         result.setException(exception);
+        result.setExpectedFileSize(expectedFileSize);
         return result;
     }
+
+    /**
+     * Converts Spigets file size (for example 2.3 and 'MB') to bytes, or -1 if the unit is unknown.
+     */
+    private long toBytes(double size, String sizeUnit) {
+        switch (sizeUnit.toUpperCase()) {
+            case "B":
+                return (long) size;
+            case "KB":
+                return (long) (size * 1024);
+            case "MB":
+                return (long) (size * 1024 * 1024);
+            case "GB":
+                return (long) (size * 1024 * 1024 * 1024);
+            default:
+                return -1;
+        }
+    }
 }
@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2021 Osiris-Team.
+ * All rights reserved.
+ *
+ * This software is copyrighted work, licensed under the terms
+ * of the MIT-License. Consult the "LICENSE" file for details.
+ */
+
+package com.osiris.SPPU.plugins.search.spigot;
+
+import com.google.gson.JsonObject;
+import com.osiris.SPPU.plugins.DetailedPlugin;
+import com.osiris.SPPU.plugins.search.SearchResult;
+import com.osiris.SPPU.plugins.search.api.SpigetAPI;
+import com.osiris.SPPU.utils.StringComparator;
+import com.osiris.autoplug.core.logger.AL;
+
+public class SpigotSearchByIndex {
+
+    /**
+     * This will search the {@link SpigotResourceIndex} for resources with a similar name,
+     * and only uses the network to confirm the author of the found resources.
+     *
+     * @return the result of the {@link SpigotSearchById} for the found resource,
+     * or null if no matching resource was found.
+     */
+    public SearchResult search(DetailedPlugin plugin) {
+        String plName = plugin.getName();
+        String plAuthor = plugin.getAuthor().replaceAll("[^a-zA-Z]", "");
+        SpigotResourceIndex index = SpigotResourceIndex.get();
+        if (index == null) return null;
+
+        for (SpigotResourceIndex.Resource resource : index.find(plName)) {
+            try {
+                JsonObject jsonAuthor = new SpigetAPI().getAuthorDetails(String.valueOf(resource.getAuthorId()));
+                String authorName = jsonAuthor.get("name").getAsString().replaceAll("[^a-zA-Z]", "");
+                double similarity = StringComparator.similarity(authorName, plAuthor, 0.5);
+                AL.debug(this.getClass(), "[" + plugin.getName() + "] Similarity between -> " + plAuthor + " and " + authorName + " is: " + similarity);
+                if (similarity > 0.5) {
+                    AL.debug(this.getClass(), "[" + plugin.getName() + "] Found plugin " + resource.getName() + " (" + resource.getId() + ") in the local index.");
+                    plugin.setSpigotId(resource.getId());
+                    SearchResult result = new SpigotSearchById().search(plugin);
+                    if (result.getResultCode() != 2 && result.getResultCode() != 3)
+                        return result;
+                    plugin.setSpigotId(0); // Probably a deleted resource, thus let the other searches try
+                }
+            } catch (Exception e) {
+                AL.debug(this.getClass(), "[" + plugin.getName() + "] Failed to confirm resource " + resource.getId() + " from the local index: " + e.getMessage());
+            }
+        }
+        AL.debug(this.getClass(), "[" + plugin.getName() + "] No match found in the local index for " + plName + "!");
+        return null;
+    }
+
+}
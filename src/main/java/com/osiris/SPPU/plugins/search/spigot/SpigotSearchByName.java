@@ -50,7 +50,7 @@ public class SpigotSearchByName {
                     queryAuthor = queryAuthor.replaceAll("[^a-zA-Z]", "");
                     plAuthor = plAuthor.replaceAll("[^a-zA-Z]", "");
 
-                    double similarity = StringComparator.similarity(queryAuthor, plAuthor);
+                    double similarity = StringComparator.similarity(queryAuthor, plAuthor, 0.5);
                     AL.debug(this.getClass(), "[" + plugin.getName() + "] Similarity between -> " + plAuthor + " and " + queryAuthor + " is: " + similarity);
                     if (similarity > 0.5) {
                         AL.debug(this.getClass(), "[" + plugin.getName() + "] Found plugin " + plName + " with matching author: " + queryAuthor + ")");
@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2021 Osiris-Team.
+ * All rights reserved.
+ *
+ * This software is copyrighted work, licensed under the terms
+ * of the MIT-License. Consult the "LICENSE" file for details.
+ */
+
+package com.osiris.SPPU.utils;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.security.MessageDigest;
+
+/**
+ * Wraps a channel and feeds every byte read from it into a {@link MessageDigest}, while also counting them. <br>
+ * This allows hashing data while it gets written somewhere else, without reading it a second time.
+ */
+public class DigestingChannel implements ReadableByteChannel {
+    private final ReadableByteChannel source;
+    private final MessageDigest digest;
+    private long byteCount;
+
+    public DigestingChannel(@NotNull ReadableByteChannel source, @NotNull MessageDigest digest) {
+        this.source = source;
+        this.digest = digest;
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        int start = dst.position();
+        int read = source.read(dst);
+        if (read > 0) {
+            ByteBuffer readBytes = dst.duplicate();
+            readBytes.limit(dst.position());
+            readBytes.position(start);
+            digest.update(readBytes);
+            byteCount += read;
+        }
+        return read;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return source.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+        source.close();
+    }
+
+    public MessageDigest getDigest() {
+        return digest;
+    }
+
+    /**
+     * Returns the amount of bytes read through this channel.
+     */
+    public long getByteCount() {
+        return byteCount;
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2021 Osiris-Team.
+ * All rights reserved.
+ *
+ * This software is copyrighted work, licensed under the terms
+ * of the MIT-License. Consult the "LICENSE" file for details.
+ */
+
+package com.osiris.SPPU.utils;
+
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Limits the amount of requests that can be sent to the same host at the same time. <br>
+ * Requests over the limit block until a previous request to that host is done, which means
+ * that its response body was read and closed (or the request failed), thus big downloads count too. <br>
+ * Must be added as network interceptor, so that the limit applies to the host that actually sends the response
+ * (after redirects), and not to the host the request was initially sent to.
+ */
+public class HostConcurrencyLimiter implements Interceptor {
+    private final int maxRequestsPerHost;
+    private final Map<String, Semaphore> hostPermits = new ConcurrentHashMap<>();
+
+    /**
+     * @param maxRequestsPerHost maximum amount of parallel requests per host. 0 or less disables the limit.
+     */
+    public HostConcurrencyLimiter(int maxRequestsPerHost) {
+        this.maxRequestsPerHost = maxRequestsPerHost;
+    }
+
+    @NotNull
+    @Override
+    public Response intercept(@NotNull Chain chain) throws IOException {
+        if (maxRequestsPerHost <= 0) return chain.proceed(chain.request());
+
+        Semaphore permits = hostPermits.computeIfAbsent(chain.request().url().host(),
+                host -> new Semaphore(maxRequestsPerHost, true));
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a free connection to " + chain.request().url().host());
+        }
+        Runnable release = new Runnable() {
+            private final AtomicBoolean isReleased = new AtomicBoolean();
+
+            @Override
+            public void run() {
+                if (isReleased.compareAndSet(false, true)) permits.release();
+            }
+        };
+        try {
+            Response response = chain.proceed(chain.request());
+            ResponseBody body = response.body();
+            if (body == null) {
+                release.run();
+                return response;
+            }
+            return response.newBuilder().body(new ReleasingResponseBody(body, release)).build();
+        } catch (IOException | RuntimeException e) {
+            release.run();
+            throw e;
+        }
+    }
+
+    /**
+     * Runs the release action once its source gets closed, which also happens when the body or the response gets closed.
+     */
+    private static class ReleasingResponseBody extends ResponseBody {
+        private final ResponseBody body;
+        private final BufferedSource source;
+
+        private ReleasingResponseBody(ResponseBody body, Runnable release) {
+            this.body = body;
+            this.source = Okio.buffer(new ForwardingSource(body.source()) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        release.run();
+                    }
+                }
+            });
+        }
+
+        @Nullable
+        @Override
+        public MediaType contentType() {
+            return body.contentType();
+        }
+
+        @Override
+        public long contentLength() {
+            return body.contentLength();
+        }
+
+        @NotNull
+        @Override
+        public BufferedSource source() {
+            return source;
+        }
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2021 Osiris-Team.
+ * All rights reserved.
+ *
+ * This software is copyrighted work, licensed under the terms
+ * of the MIT-License. Consult the "LICENSE" file for details.
+ */
+
+package com.osiris.SPPU.utils;
+
+import com.osiris.autoplug.core.logger.AL;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Paces the requests to each host with a token bucket, which allows short bursts,
+ * but not more than the configured amount of requests per second on average. <br>
+ * If a host responds with 429 (Too Many Requests) or 503 (Service Unavailable), all requests to that host
+ * pause for the time the 'Retry-After' header asks for (or a jittered, exponentially growing delay, if there is none),
+ * and the request gets sent again. Rate-limit headers, that announce an exhausted quota, pause the host too. <br>
+ * This must be added as application interceptor, since it sends requests again, and {@link #getNetworkInterceptor()}
+ * as network interceptor, which does the actual pacing. Thus responses from the http cache don't wait and don't use up tokens.
+ */
+public class HostRateLimiter implements Interceptor {
+    private static final long BASE_BACKOFF_MS = 1000;
+    private static final long MAX_BACKOFF_MS = 30000;
+    private static final long MAX_COOL_DOWN_MS = 60000; // Longer waits fail the request instead
+    private final double requestsPerSecond;
+    private final int burst;
+    private final int maxRetries;
+    private final Map<String, Host> hosts = new ConcurrentHashMap<>();
+    private final Interceptor networkInterceptor = new Pacer();
+
+    /**
+     * @param requestsPerSecond average requests per second per host. 0 or less disables pacing.
+     * @param burst             amount of requests that can be sent at once, after the host wasn't used for a while.
+     * @param maxRetries        how often a rate limited request gets sent again.
+     */
+    public HostRateLimiter(double requestsPerSecond, int burst, int maxRetries) {
+        this.requestsPerSecond = requestsPerSecond;
+        this.burst = Math.max(1, burst);
+        this.maxRetries = maxRetries;
+    }
+
+    /**
+     * Returns the interceptor that waits for the cool-down and token of the host, before a request goes over the network.
+     */
+    @NotNull
+    public Interceptor getNetworkInterceptor() {
+        return networkInterceptor;
+    }
+
+    @NotNull
+    @Override
+    public Response intercept(@NotNull Chain chain) throws IOException {
+        Request request = chain.request();
+        Host host = getHost(request);
+        for (int retry = 0; ; retry++) {
+            Response response = chain.proceed(request); // Paced by the network interceptor, if not served from the cache
+
+            int code = response.code();
+            if ((code != 429 && code != 503) || response.header("cf-mitigated") != null // Cloudflare challenges don't go away by retrying
+                    || !request.method().equals("GET") || retry >= maxRetries)
+                return response;
+
+            long delay = getRetryAfterMs(response);
+            if (delay < 0) // Full jitter, so that the waiting threads don't retry all at once
+                delay = ThreadLocalRandom.current().nextLong(Math.min(MAX_BACKOFF_MS, BASE_BACKOFF_MS << retry) + 1);
+            if (delay > MAX_COOL_DOWN_MS)
+                return response;
+            AL.debug(this.getClass(), "Rate limited by " + request.url().host() + " (" + code + "), retrying in " + delay + "ms: " + request.url());
+            host.coolDown(delay);
+            response.close();
+        }
+    }
+
+    private Host getHost(Request request) {
+        return hosts.computeIfAbsent(request.url().host(), h -> new Host());
+    }
+
+    private void sleep(long ms, Request request) throws InterruptedIOException {
+        if (ms <= 0) return;
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the rate limit of " + request.url().host());
+        }
+    }
+
+    /**
+     * Returns the milliseconds from the 'Retry-After' header, which contains either seconds or a date,
+     * or -1 if there is no such header.
+     */
+    private long getRetryAfterMs(Response response) {
+        String retryAfter = response.header("Retry-After");
+        if (retryAfter == null) return -1;
+        try {
+            return Math.max(0, Long.parseLong(retryAfter.trim()) * 1000);
+        } catch (NumberFormatException e) {
+            try {
+                ZonedDateTime date = ZonedDateTime.parse(retryAfter.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+                return Math.max(0, date.toInstant().toEpochMilli() - System.currentTimeMillis());
+            } catch (Exception ignored) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * Returns the milliseconds until the quota resets, if the rate-limit headers say that none is remaining,
+     * otherwise -1.
+     */
+    private long getRateLimitResetMs(Response response) {
+        String remaining = getHeader(response, "X-RateLimit-Remaining", "RateLimit-Remaining");
+        String reset = getHeader(response, "X-RateLimit-Reset", "RateLimit-Reset");
+        if (remaining == null || reset == null) return -1;
+        try {
+            if (Long.parseLong(remaining.trim()) > 0) return -1;
+            long value = Long.parseLong(reset.trim());
+            if (value > 1_000_000_000L) // Epoch seconds instead of seconds from now
+                return Math.max(0, value * 1000 - System.currentTimeMillis());
+            return value * 1000;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    @Nullable
+    private String getHeader(Response response, String name, String alternativeName) {
+        String value = response.header(name);
+        return value != null ? value : response.header(alternativeName);
+    }
+
+    /**
+     * Paces the requests that actually reach the network.
+     */
+    private class Pacer implements Interceptor {
+        @NotNull
+        @Override
+        public Response intercept(@NotNull Chain chain) throws IOException {
+            Request request = chain.request();
+            Host host = getHost(request);
+            sleep(host.getCoolDownReport().getMsRemaining(), request);
+            sleep(host.reserve(), request);
+
+            Response response = chain.proceed(request);
+            long rateLimitResetMs = getRateLimitResetMs(response);
+            if (rateLimitResetMs > 0 && rateLimitResetMs <= MAX_COOL_DOWN_MS)
+                host.coolDown(rateLimitResetMs); // Quota used up, but this response is fine
+            return response;
+        }
+    }
+
+    /**
+     * Token bucket and cool-down of a single host.
+     */
+    private class Host {
+        private double tokens = burst;
+        private long lastRefill = System.nanoTime();
+        private long coolDownStart;
+        private long coolDownMs;
+
+        /**
+         * Takes a token and returns how many milliseconds to wait before sending the request. <br>
+         * The token may be taken in advance (the bucket goes negative), so that
+         * waiting requests are sent in the order they arrived, evenly spaced.
+         */
+        private synchronized long reserve() {
+            if (requestsPerSecond <= 0) return 0;
+            long now = System.nanoTime();
+            tokens = Math.min(burst, tokens + (now - lastRefill) / 1e9 * requestsPerSecond);
+            lastRefill = now;
+            tokens -= 1;
+            return tokens >= 0 ? 0 : (long) Math.ceil(-tokens / requestsPerSecond * 1000);
+        }
+
+        private synchronized void coolDown(long ms) {
+            long now = System.currentTimeMillis();
+            if (now + ms > coolDownStart + coolDownMs) { // Only extend an ongoing cool-down
+                coolDownStart = now;
+                coolDownMs = ms;
+            }
+        }
+
+        private synchronized CoolDownReport getCoolDownReport() {
+            return new CoolDownReport(System.currentTimeMillis() - coolDownStart, coolDownMs);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright (c) 2021 Osiris-Team.
+ * All rights reserved.
+ *
+ * This software is copyrighted work, licensed under the terms
+ * of the MIT-License. Consult the "LICENSE" file for details.
+ */
+
+package com.osiris.SPPU.utils;
+
+/**
+ * Thrown by {@link UtilsHttp} when the server responds with a non-successful HTTP status code.
+ */
+public class HttpStatusException extends Exception {
+    private final int httpErrorCode;
+    private final String url;
+
+    public HttpStatusException(int httpErrorCode, String httpErrorMessage, String url) {
+        super("HTTP error " + httpErrorCode + " (" + httpErrorMessage + ") for url: " + url);
+        this.httpErrorCode = httpErrorCode;
+        this.url = url;
+    }
+
+    public int getHttpErrorCode() {
+        return httpErrorCode;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+}
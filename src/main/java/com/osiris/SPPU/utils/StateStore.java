@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2021 Osiris-Team.
+ * All rights reserved.
+ *
+ * This software is copyrighted work, licensed under the terms
+ * of the MIT-License. Consult the "LICENSE" file for details.
+ */
+
+package com.osiris.SPPU.utils;
+
+import com.osiris.autoplug.core.logger.AL;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.zip.CRC32;
+
+/**
+ * Stores the state SPPU needs between runs (like the latest versions and discovered ids of plugins),
+ * so that the config only contains the users settings. <br>
+ * Each change gets appended as a single record to the log file (SPPU/state.log), thus saving only costs
+ * as much as there are changes. Records have a CRC32 checksum, so that a record which was only partially
+ * written (because of a crash) gets detected and cut off on the next load. <br>
+ * Once the log contains way more records than values, it gets compacted into a new file with one record per value. <br>
+ * The file is only readable by its owner (if the file system supports POSIX permissions).
+ */
+public class StateStore {
+    private static final int MAGIC = 0x53505354;
+    private static final int FORMAT_VERSION = 1;
+    private static final byte OP_PUT = 1;
+    private static final byte OP_REMOVE = 2;
+    private static final int MIN_RECORDS_TO_COMPACT = 128;
+    private static StateStore instance;
+
+    private final File file;
+    private final Map<String, String> values = new HashMap<>();
+    private int records;
+    private FileOutputStream fileOut;
+    private DataOutputStream out;
+
+    /**
+     * Loads the log file, if it exists.
+     */
+    public StateStore(@NotNull File file) throws IOException {
+        this.file = file;
+        load();
+    }
+
+    /**
+     * Returns the shared store for SPPU/state.log, which gets loaded on the first call.
+     */
+    @NotNull
+    public static synchronized StateStore get() throws IOException {
+        if (instance == null)
+            instance = new StateStore(new File(GD.SPPU_DIR + "/state.log"));
+        return instance;
+    }
+
+    @Nullable
+    public synchronized String get(@NotNull String key) {
+        return values.get(key);
+    }
+
+    /**
+     * Sets the value for this key, or removes it if the value is null. <br>
+     * Nothing gets written if the value didn't change.
+     * Written changes are only guaranteed to be on disk after {@link #commit()}.
+     */
+    public synchronized void put(@NotNull String key, @Nullable String value) throws IOException {
+        if (Objects.equals(values.get(key), value)) return;
+        if (value == null) values.remove(key);
+        else values.put(key, value);
+        writeRecord(getOut(), key, value);
+        records++;
+    }
+
+    /**
+     * Flushes the written changes to disk and compacts the log, if it has grown too much.
+     */
+    public synchronized void commit() throws IOException {
+        if (out == null) return;
+        out.flush();
+        fileOut.getChannel().force(false);
+        if (records >= MIN_RECORDS_TO_COMPACT && records > values.size() * 2)
+            compact();
+    }
+
+    private void load() throws IOException {
+        values.clear();
+        records = 0;
+        if (!file.exists() || file.length() == 0) return;
+        long validLength = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                AL.warn("Unknown format of " + file.getName() + ", starting with an empty state.");
+                file.delete();
+                return;
+            }
+            validLength = 8;
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break; // End of log
+                }
+                int crc = in.readInt();
+                if (length <= 0 || length > 1024 * 1024) break;
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                CRC32 crc32 = new CRC32();
+                crc32.update(payload, 0, length);
+                if ((int) crc32.getValue() != crc) break;
+
+                DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload));
+                byte op = record.readByte();
+                String key = record.readUTF();
+                if (op == OP_PUT) values.put(key, record.readUTF());
+                else if (op == OP_REMOVE) values.remove(key);
+                records++;
+                validLength += 8 + length;
+            }
+        } catch (EOFException e) {
+            // Partially written record, gets cut off below
+        }
+        if (validLength < file.length()) {
+            AL.warn("Removed incomplete or corrupt records at the end of " + file.getName() + ".");
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                channel.truncate(validLength);
+            }
+        }
+    }
+
+    /**
+     * Writes all current values into a new log, which then replaces the old one. <br>
+     * Also removes overwritten and removed values from the file, which otherwise stay in the log until the next compaction.
+     */
+    public synchronized void compact() throws IOException {
+        closeOut();
+        File tmp = new File(file.getPath() + ".tmp");
+        if (tmp.exists()) tmp.delete();
+        UtilsFiles.createOwnerOnly(tmp);
+        try (DataOutputStream tmpOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            tmpOut.writeInt(MAGIC);
+            tmpOut.writeInt(FORMAT_VERSION);
+            for (Map.Entry<String, String> entry : values.entrySet())
+                writeRecord(tmpOut, entry.getKey(), entry.getValue());
+        }
+        UtilsFiles.moveAtomically(tmp, file);
+        records = values.size();
+        AL.debug(this.getClass(), "Compacted " + file.getName() + " to " + records + " records.");
+    }
+
+    private DataOutputStream getOut() throws IOException {
+        if (out == null) {
+            boolean isNew = !file.exists() || file.length() == 0;
+            UtilsFiles.createOwnerOnly(file);
+            fileOut = new FileOutputStream(file, true);
+            out = new DataOutputStream(new BufferedOutputStream(fileOut));
+            if (isNew) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+            }
+        }
+        return out;
+    }
+
+    private void closeOut() throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+            fileOut = null;
+        }
+    }
+
+    private void writeRecord(DataOutputStream out, String key, @Nullable String value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream record = new DataOutputStream(bytes);
+        record.writeByte(value == null ? OP_REMOVE : OP_PUT);
+        record.writeUTF(key);
+        if (value != null) record.writeUTF(value);
+        byte[] payload = bytes.toByteArray();
+        CRC32 crc32 = new CRC32();
+        crc32.update(payload, 0, payload.length);
+        out.writeInt(payload.length);
+        out.writeInt((int) crc32.getValue());
+        out.write(payload);
+    }
+}
@@ -8,55 +8,77 @@
 
 package com.osiris.SPPU.utils;
 
+/**
+ * Thread-safe without locks: each thread reuses its own cost array,
+ * thus search threads can compare strings in parallel.
+ */
 public class StringComparator {
+    private static final ThreadLocal<int[]> COSTS = ThreadLocal.withInitial(() -> new int[64]);
 
     /**
      * Calculates the similarity (a number within 0 and 1) between two strings.
      */
-    public static synchronized double similarity(String s1, String s2) {
-        String longer = s1, shorter = s2;
-        if (s1.length() < s2.length()) { // longer should always have greater length
-            longer = s2;
-            shorter = s1;
-        }
-        int longerLength = longer.length();
+    public static double similarity(String s1, String s2) {
+        return similarity(s1, s2, 0);
+    }
+
+    /**
+     * Same as {@link #similarity(String, String)}, but returns 0 as soon as it's clear,
+     * that the similarity will be lower than the provided minimum. <br>
+     * Use this when only similarities above a threshold matter, since most strings are way off and get rejected early.
+     */
+    public static double similarity(String s1, String s2, double minSimilarity) {
+        int longerLength = Math.max(s1.length(), s2.length());
         if (longerLength == 0) {
             return 1.0; /* both strings are zero length */
         }
-        /* // If you have StringUtils, you can use it to calculate the edit distance:
-        return (longerLength - StringUtils.getLevenshteinDistance(longer, shorter)) /
-                                                             (double) longerLength; */
-        return (longerLength - editDistance(longer, shorter)) / (double) longerLength;
-
+        // The epsilon keeps distances exactly at the threshold, since for example 1 - 0.8 is 0.19999999999999996
+        int maxDistance = minSimilarity <= 0 ? longerLength : (int) Math.floor(longerLength * (1 - minSimilarity) + 1e-9);
+        int distance = editDistance(s1, s2, maxDistance);
+        if (distance > maxDistance) return 0;
+        return (longerLength - distance) / (double) longerLength;
     }
 
     // Example implementation of the Levenshtein Edit Distance
     // See http://r...content-available-to-author-only...e.org/wiki/Levenshtein_distance#Java
-    public static synchronized int editDistance(String s1, String s2) {
-        s1 = s1.toLowerCase();
-        s2 = s2.toLowerCase();
+    public static int editDistance(String s1, String s2) {
+        return editDistance(s1, s2, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Calculates the case-insensitive edit distance, but stops and returns maxDistance + 1,
+     * as soon as the distance is known to be bigger than maxDistance.
+     */
+    public static int editDistance(String s1, String s2, int maxDistance) {
+        int length1 = s1.length();
+        int length2 = s2.length();
+        if (Math.abs(length1 - length2) > maxDistance) return maxDistance + 1; // Needs at least that many insertions
+
+        int[] costs = COSTS.get();
+        if (costs.length < length2 + 1) {
+            costs = new int[Math.max(length2 + 1, costs.length * 2)];
+            COSTS.set(costs);
+        }
 
-        int[] costs = new int[s2.length() + 1];
-        for (int i = 0; i <= s1.length(); i++) {
+        for (int j = 0; j <= length2; j++)
+            costs[j] = j;
+        for (int i = 1; i <= length1; i++) {
+            char c1 = Character.toLowerCase(s1.charAt(i - 1));
             int lastValue = i;
-            for (int j = 0; j <= s2.length(); j++) {
-                if (i == 0)
-                    costs[j] = j;
-                else {
-                    if (j > 0) {
-                        int newValue = costs[j - 1];
-                        if (s1.charAt(i - 1) != s2.charAt(j - 1))
-                            newValue = Math.min(Math.min(newValue, lastValue),
-                                    costs[j]) + 1;
-                        costs[j - 1] = lastValue;
-                        lastValue = newValue;
-                    }
-                }
+            int rowMin = lastValue;
+            for (int j = 1; j <= length2; j++) {
+                int newValue = costs[j - 1];
+                if (c1 != Character.toLowerCase(s2.charAt(j - 1)))
+                    newValue = Math.min(Math.min(newValue, lastValue),
+                            costs[j]) + 1;
+                costs[j - 1] = lastValue;
+                lastValue = newValue;
+                if (newValue < rowMin) rowMin = newValue;
             }
-            if (i > 0)
-                costs[s2.length()] = lastValue;
+            costs[length2] = lastValue;
+            if (rowMin > maxDistance) return maxDistance + 1; // The distance can only grow in the next rows
         }
-        return costs[s2.length()];
+        return costs[length2];
     }
 
     //You can use this to print out the similarity
@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2021 Osiris-Team.
+ * All rights reserved.
+ *
+ * This software is copyrighted work, licensed under the terms
+ * of the MIT-License. Consult the "LICENSE" file for details.
+ */
+
+package com.osiris.SPPU.utils;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Thread-safe in-memory cache, whose entries expire after a fixed amount of time. <br>
+ * Expired entries are evicted whenever a new entry gets added.
+ */
+public class TtlCache<K, V> {
+    private final Map<K, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final long ttlMs;
+
+    public TtlCache(long ttlMs) {
+        this.ttlMs = ttlMs;
+    }
+
+    /**
+     * Returns the cached value for this key, or loads, caches and returns it,
+     * if there is none or it expired. Null values get cached too.
+     */
+    public V get(@NotNull K key, @NotNull Loader<V> loader) throws Exception {
+        long now = System.currentTimeMillis();
+        Entry<V> entry = entries.get(key);
+        if (entry != null && entry.expiresAt > now) return entry.value;
+
+        V value = loader.load();
+        entries.values().removeIf(e -> e.expiresAt <= now);
+        entries.put(key, new Entry<>(value, now + ttlMs));
+        return value;
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public interface Loader<V> {
+        V load() throws Exception;
+    }
+
+    private static class Entry<V> {
+        private final V value;
+        private final long expiresAt;
+
+        private Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
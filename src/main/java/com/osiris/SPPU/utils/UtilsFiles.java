@@ -15,8 +15,10 @@ import org.jetbrains.annotations.Nullable;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFilePermissions;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
@@ -44,6 +46,37 @@ public class UtilsFiles {
         return new File(shortPath.replace("./", GD.WORKING_DIR + "/"));
     }
 
+    /**
+     * Moves the source file to the target in a single atomic rename, replacing the target if it exists. <br>
+     * The source gets flushed to disk first, so that the target is never visible half-written, not even after a crash.
+     * Both files should be on the same file system, otherwise the move falls back to a non-atomic copy.
+     */
+    public static void moveAtomically(@NotNull File source, @NotNull File target) throws IOException {
+        try (FileChannel channel = FileChannel.open(source.toPath(), StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        try {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            AL.debug(UtilsFiles.class, "Atomic move not supported for " + target + ", falling back to a regular move.");
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Creates the file if it doesn't exist yet, readable and writable only by its owner,
+     * if the file system supports POSIX permissions (otherwise the default permissions are used). <br>
+     * For files with sensitive content.
+     */
+    public static void createOwnerOnly(@NotNull File file) throws IOException {
+        if (file.exists()) return;
+        Path path = file.toPath();
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix"))
+            Files.createFile(path, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        else
+            Files.createFile(path);
+    }
+
     public void deleteOldPlugin(String pl_name) {
         String searchPattern = "*" + pl_name + "**.jar";
         //Find the file
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2021 Osiris-Team.
+ * All rights reserved.
+ *
+ * This software is copyrighted work, licensed under the terms
+ * of the MIT-License. Consult the "LICENSE" file for details.
+ */
+
+package com.osiris.SPPU.utils;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+public class UtilsHash {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /**
+     * Returns a new SHA-256 {@link MessageDigest}. <br>
+     * Every JVM is required to support SHA-256, thus this never fails.
+     */
+    @NotNull
+    public static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Reads the whole file and returns its SHA-256 hash as lowercase hex string.
+     */
+    @NotNull
+    public static String sha256(@NotNull File file) throws IOException {
+        MessageDigest digest = newSha256();
+        update(digest, file);
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Reads the whole file and feeds its bytes into the digest.
+     */
+    public static void update(@NotNull MessageDigest digest, @NotNull File file) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = new FileInputStream(file)) {
+            int len;
+            while ((len = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, len);
+            }
+        }
+    }
+
+    /**
+     * Returns a random salt for {@link #fingerprint(String, String)}, as hex string.
+     */
+    @NotNull
+    public static String newSalt() {
+        byte[] salt = new byte[16];
+        new SecureRandom().nextBytes(salt);
+        return toHex(salt);
+    }
+
+    /**
+     * Returns a salted PBKDF2 fingerprint of the secret, as hex string. <br>
+     * Allows checking if a secret (like a password) changed, without storing the secret itself.
+     * The fingerprint is slow to compute on purpose, thus the secret can't be guessed from it in reasonable time.
+     */
+    @NotNull
+    public static String fingerprint(@NotNull String secret, @NotNull String salt) {
+        PBEKeySpec spec = new PBEKeySpec(secret.toCharArray(), salt.getBytes(StandardCharsets.UTF_8), 65536, 256);
+        try {
+            return toHex(SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded());
+        } catch (GeneralSecurityException e) { // Every JVM since Java 8 supports PBKDF2WithHmacSHA256
+            throw new IllegalStateException(e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    @NotNull
+    public static String toHex(@NotNull byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xF];
+        }
+        return new String(chars);
+    }
+}
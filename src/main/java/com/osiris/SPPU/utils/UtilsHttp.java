@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2021 Osiris-Team.
+ * All rights reserved.
+ *
+ * This software is copyrighted work, licensed under the terms
+ * of the MIT-License. Consult the "LICENSE" file for details.
+ */
+
+package com.osiris.SPPU.utils;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.osiris.SPPU.plugins.search.api.SpigetCachePolicy;
+import okhttp3.Cache;
+import okhttp3.ConnectionPool;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Provides the single, process-wide {@link OkHttpClient} that
+ * all search and download classes use for their requests. <br>
+ * Sharing one client means sharing its connection pool, TLS sessions
+ * and HTTP/2 connections, thus most requests to the same host reuse an already open connection.
+ * OkHttp also negotiates gzip transparently.
+ */
+public class UtilsHttp {
+    public static final String USER_AGENT = "SPPU - https://github.com/Osiris-Team/SPPU";
+    private static final Map<String, CompletableFuture<JsonElement>> inFlightRequests = new ConcurrentHashMap<>();
+    private static OkHttpClient client;
+
+    /**
+     * Returns the shared client, which gets created on the first call,
+     * with the timeouts, pool size, per-host limits and response cache from the config. <br>
+     * Responses from Spiget are cached on disk, see {@link SpigetCachePolicy} for details.
+     */
+    @NotNull
+    public static synchronized OkHttpClient getClient() {
+        if (client == null) {
+            long connectTimeout = 10;
+            long readTimeout = 30;
+            int maxIdleConnections = 16;
+            int maxRequestsPerHost = 4;
+            long cacheSizeMb = 50;
+            double requestsPerSecond = 5;
+            int burst = 10;
+            int rateLimitRetries = 3;
+            if (GD.CONFIG != null) {
+                if (GD.CONFIG.httpConnectTimeout.asString() != null)
+                    connectTimeout = GD.CONFIG.httpConnectTimeout.asInt();
+                if (GD.CONFIG.httpReadTimeout.asString() != null)
+                    readTimeout = GD.CONFIG.httpReadTimeout.asInt();
+                if (GD.CONFIG.httpMaxIdleConnections.asString() != null)
+                    maxIdleConnections = GD.CONFIG.httpMaxIdleConnections.asInt();
+                if (GD.CONFIG.httpMaxRequestsPerHost.asString() != null)
+                    maxRequestsPerHost = GD.CONFIG.httpMaxRequestsPerHost.asInt();
+                if (GD.CONFIG.httpCacheSize.asString() != null)
+                    cacheSizeMb = GD.CONFIG.httpCacheSize.asInt();
+                if (GD.CONFIG.httpRequestsPerSecond.asString() != null)
+                    requestsPerSecond = Double.parseDouble(GD.CONFIG.httpRequestsPerSecond.asString());
+                if (GD.CONFIG.httpBurst.asString() != null)
+                    burst = GD.CONFIG.httpBurst.asInt();
+                if (GD.CONFIG.httpRateLimitRetries.asString() != null)
+                    rateLimitRetries = GD.CONFIG.httpRateLimitRetries.asInt();
+            }
+            HostRateLimiter rateLimiter = new HostRateLimiter(requestsPerSecond, burst, rateLimitRetries);
+            OkHttpClient.Builder builder = new OkHttpClient.Builder()
+                    .connectionPool(new ConnectionPool(maxIdleConnections, 5, TimeUnit.MINUTES))
+                    .connectTimeout(connectTimeout, TimeUnit.SECONDS)
+                    .readTimeout(readTimeout, TimeUnit.SECONDS)
+                    .writeTimeout(readTimeout, TimeUnit.SECONDS)
+                    .retryOnConnectionFailure(true)
+                    .addInterceptor(rateLimiter) // Retries rate limited requests
+                    // Network interceptors see each redirect separately, thus a download that redirects from the api to
+                    // a mirror only counts for the mirror, and responses served from the cache don't count at all
+                    .addNetworkInterceptor(new HostConcurrencyLimiter(maxRequestsPerHost))
+                    .addNetworkInterceptor(rateLimiter.getNetworkInterceptor()); // Paces only requests that aren't served from the cache
+            if (cacheSizeMb > 0)
+                builder.cache(new Cache(new File(GD.SPPU_DIR + "/http-cache"), cacheSizeMb * 1024 * 1024))
+                        .addNetworkInterceptor(new SpigetCachePolicy());
+            client = builder.build();
+        }
+        return client;
+    }
+
+    /**
+     * Performs a GET request and parses the response body as json. <br>
+     * If another thread is already requesting the same url, no new request is sent.
+     * Instead this waits for that request and returns its result (or throws its exception),
+     * thus callers must not modify the returned json.
+     *
+     * @throws HttpStatusException if the response code is not 2xx.
+     */
+    @NotNull
+    public static JsonElement getJsonElement(@NotNull String url) throws Exception {
+        CompletableFuture<JsonElement> future = new CompletableFuture<>();
+        CompletableFuture<JsonElement> inFlightFuture = inFlightRequests.putIfAbsent(url, future);
+        if (inFlightFuture != null) {
+            try {
+                return inFlightFuture.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof Exception) throw (Exception) e.getCause();
+                throw e;
+            }
+        }
+
+        try {
+            JsonElement json = fetchJsonElement(url);
+            future.complete(json);
+            return json;
+        } catch (Exception e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlightRequests.remove(url, future);
+        }
+    }
+
+    @NotNull
+    private static JsonElement fetchJsonElement(@NotNull String url) throws Exception {
+        Request request = new Request.Builder().url(url)
+                .header("User-Agent", USER_AGENT)
+                .build();
+        try (Response response = getClient().newCall(request).execute()) {
+            if (!response.isSuccessful())
+                throw new HttpStatusException(response.code(), response.message(), url);
+            ResponseBody body = response.body();
+            if (body == null)
+                throw new Exception("Null response body for url: " + url);
+            return JsonParser.parseReader(body.charStream());
+        }
+    }
+
+    @NotNull
+    public static JsonArray getJsonArray(@NotNull String url) throws Exception {
+        return getJsonElement(url).getAsJsonArray();
+    }
+
+    @NotNull
+    public static JsonObject getJsonObject(@NotNull String url) throws Exception {
+        return getJsonElement(url).getAsJsonObject();
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2021 Osiris-Team.
+ * All rights reserved.
+ *
+ * This software is copyrighted work, licensed under the terms
+ * of the MIT-License. Consult the "LICENSE" file for details.
+ */
+
+package com.osiris.SPPU.utils;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A parsed plugin version, which consists of numeric segments (1.10.2, or 2021-05-12 for dates), an optional qualifier with number (beta 3)
+ * and an optional build number (build 45, b45, #45). <br>
+ * Versions get parsed once per string and cached, thus comparing them afterwards doesn't allocate anything. <br>
+ * Qualifiers rank: snapshot/dev/nightly < alpha < beta < pre/rc < release.
+ * Unknown words (like 'v', 'release' or 'hotfix') are ignored, and so are the numbers after them
+ * (the 1.16 in 'v1.8.8 for MC 1.16').
+ */
+public final class Version implements Comparable<Version> {
+    public static final int SNAPSHOT = 0;
+    public static final int ALPHA = 1;
+    public static final int BETA = 2;
+    public static final int PRE_RELEASE = 3;
+    public static final int RELEASE = 4;
+
+    private static final int MAX_CACHE_SIZE = 4096;
+    private static final Map<String, Version> CACHE = new ConcurrentHashMap<>();
+    private static final Version INVALID = new Version(new int[0], RELEASE, 0, 0); // Cached for strings without numbers
+
+    private final int[] segments;
+    private final int qualifier;
+    private final int qualifierNumber;
+    private final int build;
+
+    private Version(int[] segments, int qualifier, int qualifierNumber, int build) {
+        this.segments = segments;
+        this.qualifier = qualifier;
+        this.qualifierNumber = qualifierNumber;
+        this.build = build;
+    }
+
+    /**
+     * Returns the parsed version for the provided string, or null if it doesn't contain any number.
+     */
+    @Nullable
+    public static Version parse(@NotNull String version) {
+        Version parsed = CACHE.get(version);
+        if (parsed == null) {
+            parsed = doParse(version);
+            if (CACHE.size() >= MAX_CACHE_SIZE) CACHE.clear(); // Only reached with lots of different strings, for example in daemon mode
+            CACHE.put(version, parsed);
+        }
+        return parsed == INVALID ? null : parsed;
+    }
+
+    private static Version doParse(String s) {
+        int length = s.length();
+        int i = 0;
+        while (i < length && !isDigit(s.charAt(i))) i++; // Skip prefixes like 'v' or 'version '
+        if (i == length) return INVALID;
+
+        // Numeric segments, separated by dots or dashes
+        int count = 1;
+        for (int j = i; j < length; j++) {
+            char c = s.charAt(j);
+            if ((c == '.' || c == '-') && j + 1 < length && isDigit(s.charAt(j + 1))) count++;
+            else if (!isDigit(c)) break;
+        }
+        int[] segments = new int[count];
+        for (int segment = 0; segment < count; segment++) {
+            long value = 0;
+            while (i < length && isDigit(s.charAt(i))) {
+                value = Math.min(value * 10 + (s.charAt(i) - '0'), Integer.MAX_VALUE);
+                i++;
+            }
+            segments[segment] = (int) value;
+            if (segment < count - 1) i++; // Skip the dot or dash
+        }
+        // Trailing zeros don't matter (1.2 equals 1.2.0), thus leave them out
+        while (count > 1 && segments[count - 1] == 0) count--;
+        if (count != segments.length) {
+            int[] trimmed = new int[count];
+            System.arraycopy(segments, 0, trimmed, 0, count);
+            segments = trimmed;
+        }
+
+        // Qualifiers and build numbers in the rest of the string
+        int qualifier = RELEASE;
+        int qualifierNumber = 0;
+        int build = 0;
+        int expectedNumber = 0; // 0 = none, 1 = qualifier number, 2 = build number
+        boolean isAfterUnknownWord = false;
+        while (i < length) {
+            char c = s.charAt(i);
+            if (isDigit(c)) {
+                long value = 0;
+                while (i < length && isDigit(s.charAt(i))) {
+                    value = Math.min(value * 10 + (s.charAt(i) - '0'), Integer.MAX_VALUE);
+                    i++;
+                }
+                if (expectedNumber == 1) qualifierNumber = (int) value;
+                else if (expectedNumber == 2 || (build == 0 && !isAfterUnknownWord)) build = (int) value; // 1.2.3 (45)
+                expectedNumber = 0;
+            } else if (Character.isLetter(c)) {
+                int start = i;
+                while (i < length && Character.isLetter(s.charAt(i))) i++;
+                int wordLength = i - start;
+                int wordQualifier = -1;
+                if (isWord(s, start, wordLength, "snapshot") || isWord(s, start, wordLength, "dev")
+                        || isWord(s, start, wordLength, "nightly"))
+                    wordQualifier = SNAPSHOT;
+                else if (isWord(s, start, wordLength, "alpha") || isWord(s, start, wordLength, "a"))
+                    wordQualifier = ALPHA;
+                else if (isWord(s, start, wordLength, "beta"))
+                    wordQualifier = BETA;
+                else if (isWord(s, start, wordLength, "pre") || isWord(s, start, wordLength, "preview")
+                        || isWord(s, start, wordLength, "rc") || isWord(s, start, wordLength, "cr"))
+                    wordQualifier = PRE_RELEASE;
+                else if (isWord(s, start, wordLength, "build") || isWord(s, start, wordLength, "b"))
+                    expectedNumber = 2; // 2.3.1-b45, 1.0-SNAPSHOT-b45
+                else {
+                    expectedNumber = 0;
+                    isAfterUnknownWord = true;
+                }
+
+                if (wordQualifier != -1) {
+                    if (wordQualifier < qualifier) { // 1.0-beta-SNAPSHOT is a snapshot
+                        qualifier = wordQualifier;
+                        qualifierNumber = 0;
+                    }
+                    expectedNumber = wordQualifier == qualifier ? 1 : 0;
+                }
+            } else {
+                if (c == '#') expectedNumber = 2;
+                i++; // Separators like '-', '_', '.', ' ' or '(' keep the expected number
+            }
+        }
+        return new Version(segments, qualifier, qualifierNumber, build);
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isWord(String s, int start, int length, String word) {
+        return length == word.length() && s.regionMatches(true, start, word, 0, length);
+    }
+
+    /**
+     * Compares segment by segment (missing segments count as 0), then the qualifier, its number and lastly the build number.
+     */
+    @Override
+    public int compareTo(@NotNull Version other) {
+        int max = Math.max(segments.length, other.segments.length);
+        for (int i = 0; i < max; i++) {
+            int a = i < segments.length ? segments[i] : 0;
+            int b = i < other.segments.length ? other.segments[i] : 0;
+            if (a != b) return a < b ? -1 : 1;
+        }
+        if (qualifier != other.qualifier) return qualifier < other.qualifier ? -1 : 1;
+        if (qualifierNumber != other.qualifierNumber) return qualifierNumber < other.qualifierNumber ? -1 : 1;
+        return Integer.compare(build, other.build);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Version && compareTo((Version) o) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 1;
+        for (int segment : segments)
+            hash = 31 * hash + segment;
+        return 31 * (31 * (31 * hash + qualifier) + qualifierNumber) + build;
+    }
+
+    public int getSegmentsCount() {
+        return segments.length;
+    }
+
+    public int getSegment(int index) {
+        return index < segments.length ? segments[index] : 0;
+    }
+
+    public int getQualifier() {
+        return qualifier;
+    }
+
+    public int getQualifierNumber() {
+        return qualifierNumber;
+    }
+
+    public int getBuild() {
+        return build;
+    }
+}
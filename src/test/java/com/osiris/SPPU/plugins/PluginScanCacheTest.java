@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2021 Osiris-Team.
+ * All rights reserved.
+ *
+ * This software is copyrighted work, licensed under the terms
+ * of the MIT-License. Consult the "LICENSE" file for details.
+ */
+
+package com.osiris.SPPU.plugins;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PluginScanCacheTest {
+    private File dir;
+    private File cacheFile;
+    private File jar;
+
+    @BeforeEach
+    void createDir() throws IOException {
+        dir = Files.createTempDirectory("sppu-scan-cache").toFile();
+        cacheFile = new File(dir, "plugins-scan-cache.json");
+        jar = new File(dir, "Example.jar");
+        write(jar, "first");
+    }
+
+    @AfterEach
+    void deleteDir() throws IOException {
+        Files.walk(dir.toPath()).sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+    }
+
+    @Test
+    void readsCacheBackAfterRescan() throws IOException {
+        PluginScanCache cache = new PluginScanCache(cacheFile, false);
+        cache.load();
+        assertNull(cache.get(jar, null), "Nothing cached yet");
+        cache.put(jar, new DetailedPlugin(jar.getPath(), "Example", "1.0", "Osiris", 123, 456, null), null);
+        cache.save();
+
+        // Rescan with a new instance, like on the next start
+        PluginScanCache rescan = new PluginScanCache(cacheFile, false);
+        rescan.load();
+        assertPlugin(rescan.get(jar, null));
+        rescan.save(); // Must keep the entries, that were only read from the cache
+
+        PluginScanCache again = new PluginScanCache(cacheFile, false);
+        again.load();
+        assertPlugin(again.get(jar, null));
+    }
+
+    @Test
+    void keepsEntriesInMemoryForTheNextScan() throws IOException {
+        PluginScanCache cache = new PluginScanCache(cacheFile, false);
+        cache.put(jar, new DetailedPlugin(jar.getPath(), "Example", "1.0", "Osiris", 123, 456, null), null);
+        cache.reuse();
+        assertPlugin(cache.get(jar, null));
+    }
+
+    @Test
+    void remembersJarsWithoutPluginYml() throws IOException {
+        PluginScanCache cache = new PluginScanCache(cacheFile, false);
+        cache.put(jar, null, null);
+        cache.save();
+
+        PluginScanCache rescan = new PluginScanCache(cacheFile, false);
+        rescan.load();
+        PluginScanCache.Entry entry = rescan.get(jar, null);
+        assertNotNull(entry, "Jars without 'plugin.yml' must not be read again either");
+        assertNull(entry.toPlugin(jar));
+    }
+
+    @Test
+    void removesJarsThatWereNotRescanned() throws IOException {
+        PluginScanCache cache = new PluginScanCache(cacheFile, false);
+        cache.put(jar, null, null);
+        cache.save();
+
+        PluginScanCache rescan = new PluginScanCache(cacheFile, false);
+        rescan.load();
+        rescan.save(); // The jar was removed, thus it wasn't part of this scan
+
+        PluginScanCache again = new PluginScanCache(cacheFile, false);
+        again.load();
+        assertNull(again.get(jar, null));
+    }
+
+    @Test
+    void invalidatesJarWithOtherSize() throws IOException {
+        PluginScanCache cache = cacheWithJar(false);
+        long lastModified = jar.lastModified();
+        write(jar, "second, but longer");
+        assertTrue(jar.setLastModified(lastModified));
+        assertNull(cache.get(jar, cache.getSha256(jar)));
+    }
+
+    @Test
+    void invalidatesJarWithOtherLastModifiedTime() throws IOException {
+        PluginScanCache cache = cacheWithJar(false);
+        assertTrue(jar.setLastModified(jar.lastModified() - 60000));
+        assertNull(cache.get(jar, cache.getSha256(jar)));
+    }
+
+    @Test
+    void invalidatesJarReplacedWithSameSizeAndLastModifiedTimeOnlyIfHashing() throws IOException {
+        PluginScanCache hashingCache = cacheWithJar(true);
+        long lastModified = jar.lastModified();
+        write(jar, "other"); // Same length as "first"
+        assertTrue(jar.setLastModified(lastModified));
+        assertNull(hashingCache.get(jar, hashingCache.getSha256(jar)), "The hash must detect the replaced jar");
+
+        write(jar, "first");
+        assertTrue(jar.setLastModified(lastModified));
+        PluginScanCache cache = cacheWithJar(false);
+        write(jar, "other");
+        assertTrue(jar.setLastModified(lastModified));
+        assertNotNull(cache.get(jar, cache.getSha256(jar)), "Without hashing only size and last modified time are compared");
+    }
+
+    /**
+     * Returns a cache, that was loaded from a file containing the current jar.
+     */
+    private PluginScanCache cacheWithJar(boolean isHashing) throws IOException {
+        PluginScanCache cache = new PluginScanCache(cacheFile, isHashing);
+        cache.put(jar, new DetailedPlugin(jar.getPath(), "Example", "1.0", "Osiris", 123, 456, null), cache.getSha256(jar));
+        cache.save();
+        PluginScanCache loaded = new PluginScanCache(cacheFile, isHashing);
+        loaded.load();
+        return loaded;
+    }
+
+    private static void assertPlugin(PluginScanCache.Entry entry) {
+        assertNotNull(entry);
+        DetailedPlugin plugin = entry.toPlugin(new File("Example.jar"));
+        assertNotNull(plugin);
+        assertEquals("Example", plugin.getName());
+        assertEquals("1.0", plugin.getVersion());
+        assertEquals("Osiris", plugin.getAuthor());
+        assertEquals(123, plugin.getSpigotId());
+        assertEquals(456, plugin.getBukkitId());
+    }
+
+    private static void write(File file, String content) throws IOException {
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2021 Osiris-Team.
+ * All rights reserved.
+ *
+ * This software is copyrighted work, licensed under the terms
+ * of the MIT-License. Consult the "LICENSE" file for details.
+ */
+
+package com.osiris.SPPU.plugins;
+
+import com.osiris.SPPU.utils.GD;
+import com.osiris.betterthread.BThreadManager;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import okhttp3.OkHttpClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the resuming of downloads against a local http server.
+ */
+class TaskPluginDownloadTest {
+    private static final byte[] OLD_JAR = jar(12000, 'o'); // Longer, so that appending to it instead of truncating would show
+    private static final byte[] NEW_JAR = jar(10000, 'n');
+    private final List<Map<String, String>> requests = Collections.synchronizedList(new ArrayList<>());
+    private HttpServer server;
+    private File dir;
+    private File dest;
+    private File part;
+    private File partValidator;
+
+    @BeforeEach
+    void start() throws IOException {
+        dir = Files.createTempDirectory("sppu-download").toFile();
+        GD.SPPU_DIR = dir;
+        dest = new File(dir, "Example.jar");
+        part = new File(dir, "Example.jar.part");
+        partValidator = new File(dir, "Example.jar.part.validator");
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.start();
+    }
+
+    @AfterEach
+    void stop() throws IOException {
+        server.stop(0);
+        Files.walk(dir.toPath()).sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+    }
+
+    @Test
+    void resumesPartWithRangeRequest() throws Exception {
+        Files.write(part.toPath(), Arrays.copyOf(NEW_JAR, 4000));
+        Files.write(partValidator.toPath(), "\"v2\"".getBytes(StandardCharsets.UTF_8));
+        server.createContext("/jar", exchange -> {
+            record(exchange);
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            if (range != null && "\"v2\"".equals(exchange.getRequestHeaders().getFirst("If-Range"))) {
+                int start = Integer.parseInt(range.substring("bytes=".length(), range.length() - 1));
+                exchange.getResponseHeaders().add("Content-Range", "bytes " + start + "-" + (NEW_JAR.length - 1) + "/" + NEW_JAR.length);
+                respond(exchange, 206, Arrays.copyOfRange(NEW_JAR, start, NEW_JAR.length));
+            } else
+                respond(exchange, 200, NEW_JAR);
+        });
+
+        download();
+
+        assertEquals(1, requests.size());
+        assertEquals("bytes=4000-", requests.get(0).get("Range"));
+        assertArrayEquals(NEW_JAR, Files.readAllBytes(dest.toPath()));
+        assertFalse(part.exists());
+        assertFalse(partValidator.exists());
+    }
+
+    @Test
+    void restartsPartIfValidatorChanged() throws Exception {
+        Files.write(part.toPath(), Arrays.copyOf(OLD_JAR, 11000));
+        Files.write(partValidator.toPath(), "\"v1\"".getBytes(StandardCharsets.UTF_8));
+        server.createContext("/jar", exchange -> {
+            record(exchange);
+            // The file changed to v2, thus If-Range doesn't match and the complete new file gets sent
+            respond(exchange, 200, NEW_JAR);
+        });
+
+        download();
+
+        assertEquals(1, requests.size());
+        assertEquals("\"v1\"", requests.get(0).get("If-Range"));
+        assertArrayEquals(NEW_JAR, Files.readAllBytes(dest.toPath()), "The old .part must be truncated, not appended to");
+        assertFalse(part.exists());
+        assertFalse(partValidator.exists());
+    }
+
+    @Test
+    void restartsPartIfRangeNotSatisfiable() throws Exception {
+        Files.write(part.toPath(), OLD_JAR); // Longer than the file on the server
+        Files.write(partValidator.toPath(), "\"v2\"".getBytes(StandardCharsets.UTF_8));
+        server.createContext("/jar", exchange -> {
+            record(exchange);
+            if (exchange.getRequestHeaders().getFirst("Range") != null) {
+                exchange.getResponseHeaders().add("Content-Range", "bytes */" + NEW_JAR.length);
+                respond(exchange, 416, new byte[0]);
+            } else
+                respond(exchange, 200, NEW_JAR);
+        });
+
+        download();
+
+        assertEquals(2, requests.size(), "The 416 must be followed by a complete download");
+        assertEquals("bytes=12000-", requests.get(0).get("Range"));
+        assertNull(requests.get(1).get("Range"));
+        assertArrayEquals(NEW_JAR, Files.readAllBytes(dest.toPath()));
+        assertFalse(part.exists());
+    }
+
+    private void download() throws Exception {
+        TaskPluginDownload task = new TaskPluginDownload("PluginDownloader", new BThreadManager(), "Example", "2.0",
+                "http://127.0.0.1:" + server.getAddress().getPort() + "/jar", "AUTOMATIC", dest);
+        task.setHttpClient(new OkHttpClient(), "SPPU-Test");
+        task.download(dest);
+    }
+
+    private void record(HttpExchange exchange) {
+        Map<String, String> headers = new HashMap<>();
+        for (String name : Arrays.asList("Range", "If-Range"))
+            if (exchange.getRequestHeaders().getFirst(name) != null)
+                headers.put(name, exchange.getRequestHeaders().getFirst(name));
+        requests.add(headers);
+    }
+
+    private static void respond(HttpExchange exchange, int code, byte[] body) throws IOException {
+        exchange.getResponseHeaders().add("Content-Type", "application/java-archive");
+        exchange.getResponseHeaders().add("ETag", "\"v2\"");
+        exchange.sendResponseHeaders(code, body.length == 0 ? -1 : body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * Returns the bytes of a fake jar, which only needs the zip header to pass the verification.
+     */
+    private static byte[] jar(int size, char filler) {
+        byte[] bytes = new byte[size];
+        Arrays.fill(bytes, (byte) filler);
+        bytes[0] = 'P';
+        bytes[1] = 'K';
+        bytes[2] = 3;
+        bytes[3] = 4;
+        return bytes;
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2021 Osiris-Team.
+ * All rights reserved.
+ *
+ * This software is copyrighted work, licensed under the terms
+ * of the MIT-License. Consult the "LICENSE" file for details.
+ */
+
+package com.osiris.SPPU.plugins.search.spigot;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.osiris.SPPU.plugins.DetailedPlugin;
+import com.osiris.SPPU.plugins.search.SearchResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpigotDeltaSyncTest {
+    private File dir;
+    private File file;
+
+    @BeforeEach
+    void createDir() throws IOException {
+        dir = Files.createTempDirectory("sppu-delta-sync").toFile();
+        file = new File(dir, "spigot-delta-sync.json");
+    }
+
+    @AfterEach
+    void deleteDir() throws IOException {
+        Files.walk(dir.toPath()).sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+    }
+
+    @Test
+    void firstRunWithoutMarkChecksEverything() throws Exception {
+        FakeDeltaSync first = run(new Feed().add(1, 1000).add(2, 900));
+        assertEquals(1, first.requestedPages);
+        assertNull(first.getUnchangedResult(plugin(1)), "Without a mark nothing is known to be unchanged");
+        assertNull(first.getUnchangedResult(plugin(2)), "Without a mark nothing is known to be unchanged");
+        first.update(result(1));
+        first.update(result(2));
+        first.save();
+
+        FakeDeltaSync second = run(new Feed().add(1, 1000).add(2, 900));
+        assertEquals(1, second.requestedPages);
+        assertNull(second.getUnchangedResult(plugin(1)), "Updated in the same second as the mark, thus it counts as changed");
+        SearchResult unchanged = second.getUnchangedResult(plugin(2));
+        assertNotNull(unchanged);
+        assertEquals("2.0", unchanged.getLatestVersion());
+    }
+
+    @Test
+    void equalTimestampsOnPageBoundaryDontSkipResources() throws Exception {
+        FakeDeltaSync first = run(new Feed().add(500, 5000));
+        for (int id = 101; id <= 102; id++)
+            first.update(result(id));
+        first.save();
+
+        // A full page, that only contains resources updated in the same second as the mark,
+        // followed by another one on the next page
+        Feed feed = new Feed();
+        for (int id = 1; id <= SpigotDeltaSync.PAGE_SIZE; id++)
+            feed.add(id, 5000);
+        feed.add(101, 5000).add(102, 4000);
+        FakeDeltaSync second = run(feed);
+
+        assertEquals(2, second.requestedPages, "The second page must be read, since the first one ended at the mark");
+        assertNull(second.getUnchangedResult(plugin(101)), "Updated at the mark on the next page, thus it counts as changed");
+        assertNotNull(second.getUnchangedResult(plugin(102)));
+    }
+
+    @Test
+    void tooManyChangesChecksEverything() throws Exception {
+        FakeDeltaSync first = run(new Feed().add(500, 5000));
+        first.update(result(7));
+        first.save();
+
+        Feed feed = new Feed();
+        for (int id = 1000; id < 1000 + SpigotDeltaSync.PAGE_SIZE * SpigotDeltaSync.MAX_PAGES; id++)
+            feed.add(id, 9000);
+        FakeDeltaSync second = run(feed);
+
+        assertEquals(SpigotDeltaSync.MAX_PAGES, second.requestedPages);
+        assertNull(second.getUnchangedResult(plugin(7)), "Resources behind the last read page may have changed too");
+        second.update(result(7));
+        second.save();
+
+        FakeDeltaSync third = run(new Feed().add(7, 8000));
+        assertNotNull(third.getUnchangedResult(plugin(7)), "The mark must have been advanced to the newest update");
+    }
+
+    /**
+     * Loads the state of the last run and syncs with the provided feed, like a new run of SPPU.
+     */
+    private FakeDeltaSync run(Feed feed) throws Exception {
+        FakeDeltaSync sync = new FakeDeltaSync(file, feed);
+        sync.load();
+        sync.sync();
+        return sync;
+    }
+
+    private static DetailedPlugin plugin(int spigotId) {
+        return new DetailedPlugin("plugins/Plugin" + spigotId + ".jar", "Plugin" + spigotId, "1.0", "Osiris", spigotId, 0, null);
+    }
+
+    private static SearchResult result(int spigotId) {
+        return new SearchResult(plugin(spigotId), (byte) 1, "2.0", "https://api.spiget.org/v2/resources/" + spigotId + "/download",
+                ".jar", "" + spigotId, null, false);
+    }
+
+    /**
+     * Resources feed sorted by update date, newest first.
+     */
+    private static class Feed {
+        private final List<JsonObject> resources = new ArrayList<>();
+
+        private Feed add(int id, long updateDate) {
+            JsonObject json = new JsonObject();
+            json.addProperty("id", id);
+            json.addProperty("updateDate", updateDate);
+            resources.add(json);
+            return this;
+        }
+    }
+
+    private static class FakeDeltaSync extends SpigotDeltaSync {
+        private final Feed feed;
+        private int requestedPages;
+
+        private FakeDeltaSync(File file, Feed feed) {
+            super(file);
+            this.feed = feed;
+        }
+
+        @Override
+        JsonArray getResourcesPage(int page) {
+            requestedPages++;
+            JsonArray array = new JsonArray();
+            int start = (page - 1) * PAGE_SIZE;
+            for (int i = start; i < Math.min(start + PAGE_SIZE, feed.resources.size()); i++)
+                array.add(feed.resources.get(i));
+            return array;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2021 Osiris-Team.
+ * All rights reserved.
+ *
+ * This software is copyrighted work, licensed under the terms
+ * of the MIT-License. Consult the "LICENSE" file for details.
+ */
+
+package com.osiris.SPPU.utils;
+
+import okhttp3.*;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HostConcurrencyLimiterTest {
+    private static final Request REQUEST = new Request.Builder().url("https://cdn.example.org/plugin.jar").build();
+
+    @Test
+    void holdsPermitUntilBodyIsClosed() throws Exception {
+        HostConcurrencyLimiter limiter = new HostConcurrencyLimiter(1);
+        Response first = limiter.intercept(new FakeChain(false));
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Response> second = executor.submit(() -> limiter.intercept(new FakeChain(false)));
+            assertThrows(TimeoutException.class, () -> second.get(200, TimeUnit.MILLISECONDS),
+                    "The second request must wait, while the first body is still open");
+
+            first.close();
+            second.get(2, TimeUnit.SECONDS).close();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void releasesPermitWhenBodyIsReadAndClosed() throws Exception {
+        HostConcurrencyLimiter limiter = new HostConcurrencyLimiter(1);
+        try (Response response = limiter.intercept(new FakeChain(false))) {
+            assertEquals("jar", response.body().string());
+        }
+        assertCompletesQuickly(limiter);
+    }
+
+    @Test
+    void releasesPermitWhenRequestFails() throws Exception {
+        HostConcurrencyLimiter limiter = new HostConcurrencyLimiter(1);
+        assertThrows(IOException.class, () -> limiter.intercept(new FakeChain(true)));
+        assertCompletesQuickly(limiter);
+    }
+
+    @Test
+    void releasesPermitOnlyOnce() throws Exception {
+        HostConcurrencyLimiter limiter = new HostConcurrencyLimiter(1);
+        Response response = limiter.intercept(new FakeChain(false));
+        response.body().close();
+        response.close(); // Closes the source a second time
+        Response other = limiter.intercept(new FakeChain(false));
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Response> third = executor.submit(() -> limiter.intercept(new FakeChain(false)));
+            assertThrows(TimeoutException.class, () -> third.get(200, TimeUnit.MILLISECONDS),
+                    "Closing twice must not release two permits");
+            other.close();
+            third.get(2, TimeUnit.SECONDS).close();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void assertCompletesQuickly(HostConcurrencyLimiter limiter) throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Response> next = executor.submit(() -> limiter.intercept(new FakeChain(false)));
+            next.get(2, TimeUnit.SECONDS).close();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Chain that answers with a small body, or fails like a broken connection.
+     */
+    private static class FakeChain implements Interceptor.Chain {
+        private final boolean isFailing;
+
+        private FakeChain(boolean isFailing) {
+            this.isFailing = isFailing;
+        }
+
+        @Override
+        public Request request() {
+            return REQUEST;
+        }
+
+        @Override
+        public Response proceed(Request request) throws IOException {
+            if (isFailing) throw new IOException("Connection reset");
+            return new Response.Builder()
+                    .request(request)
+                    .protocol(Protocol.HTTP_1_1)
+                    .code(200)
+                    .message("OK")
+                    .body(ResponseBody.create("jar", MediaType.get("application/java-archive")))
+                    .build();
+        }
+
+        @Override
+        public Connection connection() {
+            return null;
+        }
+
+        @Override
+        public Call call() {
+            return null;
+        }
+
+        @Override
+        public int connectTimeoutMillis() {
+            return 0;
+        }
+
+        @Override
+        public Interceptor.Chain withConnectTimeout(int timeout, TimeUnit unit) {
+            return this;
+        }
+
+        @Override
+        public int readTimeoutMillis() {
+            return 0;
+        }
+
+        @Override
+        public Interceptor.Chain withReadTimeout(int timeout, TimeUnit unit) {
+            return this;
+        }
+
+        @Override
+        public int writeTimeoutMillis() {
+            return 0;
+        }
+
+        @Override
+        public Interceptor.Chain withWriteTimeout(int timeout, TimeUnit unit) {
+            return this;
+        }
+    }
+}
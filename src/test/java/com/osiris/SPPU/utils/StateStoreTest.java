@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2021 Osiris-Team.
+ * All rights reserved.
+ *
+ * This software is copyrighted work, licensed under the terms
+ * of the MIT-License. Consult the "LICENSE" file for details.
+ */
+
+package com.osiris.SPPU.utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Comparator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StateStoreTest {
+    private static final int HEADER_SIZE = 8;
+    /**
+     * Length and CRC32 ints, op byte, key "k00" and value "v0" as UTF.
+     */
+    private static final int RECORD_SIZE = 4 + 4 + 1 + (2 + 3) + (2 + 2);
+    private File dir;
+    private File file;
+
+    @BeforeEach
+    void createDir() throws IOException {
+        dir = Files.createTempDirectory("sppu-state").toFile();
+        file = new File(dir, "state.log");
+    }
+
+    @AfterEach
+    void deleteDir() throws IOException {
+        Files.walk(dir.toPath()).sorted(Comparator.reverseOrder()).map(java.nio.file.Path::toFile).forEach(File::delete);
+    }
+
+    @Test
+    void reloadsCommittedValues() throws IOException {
+        StateStore store = new StateStore(file);
+        store.put("k00", "v0");
+        store.put("k01", "v0");
+        store.put("k01", "v1");
+        store.put("k00", null);
+        store.commit();
+
+        StateStore reloaded = new StateStore(file);
+        assertNull(reloaded.get("k00"));
+        assertEquals("v1", reloaded.get("k01"));
+        assertEquals(HEADER_SIZE + 4 * RECORD_SIZE - (2 + 2), file.length(), "The remove record has no value");
+    }
+
+    @Test
+    void dropsRecordWithWrongChecksum() throws IOException {
+        StateStore store = new StateStore(file);
+        store.put("k00", "v0");
+        store.put("k01", "v0");
+        store.commit();
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) { // Changes the value of the last record to "v1"
+            raf.seek(raf.length() - 1);
+            raf.write('1');
+        }
+
+        StateStore reloaded = new StateStore(file);
+        assertEquals("v0", reloaded.get("k00"));
+        assertNull(reloaded.get("k01"));
+        assertEquals(HEADER_SIZE + RECORD_SIZE, file.length(), "The corrupt record must be cut off");
+    }
+
+    @Test
+    void truncatesTornTail() throws IOException {
+        StateStore store = new StateStore(file);
+        store.put("k00", "v0");
+        store.put("k01", "v0");
+        store.commit();
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) { // Like a crash while writing the last record
+            raf.setLength(raf.length() - 3);
+        }
+
+        StateStore reloaded = new StateStore(file);
+        assertEquals("v0", reloaded.get("k00"));
+        assertNull(reloaded.get("k01"));
+        assertEquals(HEADER_SIZE + RECORD_SIZE, file.length(), "The torn record must be cut off");
+
+        reloaded.put("k02", "v0"); // Gets appended right after the last complete record
+        reloaded.commit();
+        StateStore again = new StateStore(file);
+        assertEquals("v0", again.get("k00"));
+        assertEquals("v0", again.get("k02"));
+    }
+
+    @Test
+    void compactsOnlyFromMinRecords() throws IOException {
+        StateStore store = new StateStore(file);
+        for (int i = 0; i < 127; i++)
+            store.put("k00", "v" + (i % 2));
+        store.commit();
+        assertEquals(HEADER_SIZE + 127 * RECORD_SIZE, file.length(), "127 records must not get compacted");
+
+        store.put("k00", "v2");
+        store.commit();
+        assertEquals(HEADER_SIZE + RECORD_SIZE, file.length(), "128 records for 1 value must get compacted");
+        assertEquals("v2", new StateStore(file).get("k00"));
+    }
+
+    @Test
+    void compactsOnlyIfRecordsExceedTwiceTheValues() throws IOException {
+        StateStore store = new StateStore(file);
+        for (int i = 0; i < 64; i++)
+            store.put(key(i), "v0");
+        for (int i = 0; i < 64; i++)
+            store.put(key(i), "v1");
+        store.commit();
+        assertEquals(HEADER_SIZE + 128 * RECORD_SIZE, file.length(), "128 records for 64 values must not get compacted");
+
+        store.put(key(0), "v2");
+        store.commit();
+        assertEquals(HEADER_SIZE + 64 * RECORD_SIZE, file.length(), "129 records for 64 values must get compacted");
+
+        StateStore reloaded = new StateStore(file);
+        assertEquals("v2", reloaded.get(key(0)));
+        assertEquals("v1", reloaded.get(key(63)));
+    }
+
+    @Test
+    void createsFileOnlyReadableByOwner() throws IOException {
+        if (!FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) return;
+        StateStore store = new StateStore(file);
+        store.put("k00", "v0");
+        store.commit();
+        assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(file.toPath())));
+
+        store.compact();
+        assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(file.toPath())),
+                "The compacted file must keep the permissions");
+    }
+
+    private static String key(int i) {
+        return String.format("k%02d", i);
+    }
+}
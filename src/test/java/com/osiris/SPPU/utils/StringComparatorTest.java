@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2021 Osiris-Team.
+ * All rights reserved.
+ *
+ * This software is copyrighted work, licensed under the terms
+ * of the MIT-License. Consult the "LICENSE" file for details.
+ */
+
+package com.osiris.SPPU.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StringComparatorTest {
+
+    @Test
+    void keepSimilarityExactlyAtThreshold() {
+        // 2 edits in 10 characters is a similarity of exactly 0.8
+        assertEquals(0.8, StringComparator.similarity("abcdefghij", "abcdefghXX"), 1e-9);
+        assertEquals(0.8, StringComparator.similarity("abcdefghij", "abcdefghXX", 0.8), 1e-9);
+        // 1 edit in 2 characters is exactly 0.5, which is used by the author searches
+        assertEquals(0.5, StringComparator.similarity("ab", "aX", 0.5), 1e-9);
+    }
+
+    @Test
+    void rejectSimilarityBelowThreshold() {
+        assertEquals(0.7, StringComparator.similarity("abcdefghij", "abcdefgXXX"), 1e-9);
+        assertEquals(0, StringComparator.similarity("abcdefghij", "abcdefgXXX", 0.8));
+    }
+
+    @Test
+    void matchUnboundedSimilarityAboveThreshold() {
+        String[][] pairs = {
+                {"EssentialsX", "Essentials"},
+                {"WorldEdit", "worldedit"},
+                {"LuckPerms", "LuckPerm"},
+                {"ProtocolLib", "ProtocolLibrary"},
+                {"Vault", "Vaults"},
+        };
+        for (String[] pair : pairs) {
+            double unbounded = StringComparator.similarity(pair[0], pair[1]);
+            for (double min = 0.05; min <= 1.0; min += 0.05) {
+                double bounded = StringComparator.similarity(pair[0], pair[1], min);
+                if (unbounded >= min - 1e-9)
+                    assertEquals(unbounded, bounded, 1e-9, pair[0] + "/" + pair[1] + " at " + min);
+                else
+                    assertEquals(0, bounded, pair[0] + "/" + pair[1] + " at " + min);
+            }
+        }
+    }
+
+    @Test
+    void stopEarlyAboveMaxDistance() {
+        assertEquals(2, StringComparator.editDistance("abcdefghij", "abcdefghXX", 2));
+        assertEquals(2, StringComparator.editDistance("abcdefghij", "abcdefgXXX", 1)); // maxDistance + 1
+        assertEquals(3, StringComparator.editDistance("abcdefghij", "abcdefgXXX"));
+    }
+}
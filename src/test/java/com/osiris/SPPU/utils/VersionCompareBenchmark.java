@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2021 Osiris-Team.
+ * All rights reserved.
+ *
+ * This software is copyrighted work, licensed under the terms
+ * of the MIT-License. Consult the "LICENSE" file for details.
+ */
+
+package com.osiris.SPPU.utils;
+
+/**
+ * Timing harness, that compares the previous string/double based {@link UtilsVersion#compare(String, String)}
+ * with the current one, which is based on {@link Version}. <br>
+ * Not a unit test (thus not run by surefire), run it manually with its main method.
+ * Measures two cases: the same versions compared again and again (like a daemon checking the same plugins),
+ * and versions that are all different (every string gets parsed once).
+ */
+public class VersionCompareBenchmark {
+    private static final String[] CORPUS = {
+            "1.0", "1.1", "1.9", "1.10", "2.3.1", "2.3.2", "v1.8.8", "1.0.0-SNAPSHOT", "1.0-beta-2", "1.0-rc1",
+            "2.3.1-b45", "5.0.0-SNAPSHOT-b45", "1.2.3 build 99", "2021-05-12", "1.16.5-R0.1", "4.7.0", "5.0",
+            "v1.8.8 for MC 1.16", "3.4.2-release", "Release 1.3"
+    };
+    private static final int ROUNDS = 5;
+    private static final int ITERATIONS = 200_000;
+
+    public static void main(String[] args) {
+        UtilsVersion current = new UtilsVersion();
+
+        String[] unique = new String[ITERATIONS * 2];
+        for (int i = 0; i < unique.length; i++)
+            unique[i] = (i % 7) + "." + (i / 7 % 100) + "." + i;
+
+        for (int round = 1; round <= ROUNDS; round++) { // The first rounds are the JIT warmup
+            System.out.println("Round " + round + ":");
+            print("  repeated, legacy ", measureRepeated(VersionCompareBenchmark::legacyCompare));
+            print("  repeated, current", measureRepeated(current::compare));
+            print("  unique,   legacy ", measureUnique(VersionCompareBenchmark::legacyCompare, unique));
+            print("  unique,   current", measureUnique(current::compare, unique));
+        }
+    }
+
+    private static void print(String name, long nanosPerOp) {
+        System.out.println(name + ": " + nanosPerOp + " ns/op");
+    }
+
+    private static long measureRepeated(Comparison comparison) {
+        int sink = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            if (comparison.compare(CORPUS[i % CORPUS.length], CORPUS[(i * 7 + 3) % CORPUS.length])) sink++;
+        }
+        long nanos = System.nanoTime() - start;
+        if (sink == -1) System.out.println(); // Keeps the results alive
+        return nanos / ITERATIONS;
+    }
+
+    private static long measureUnique(Comparison comparison, String[] unique) {
+        int sink = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            if (comparison.compare(unique[i * 2], unique[i * 2 + 1])) sink++;
+        }
+        long nanos = System.nanoTime() - start;
+        if (sink == -1) System.out.println();
+        return nanos / ITERATIONS;
+    }
+
+    /**
+     * The implementation of {@link UtilsVersion#compare(String, String)} before the {@link Version} parser,
+     * without the logging of invalid versions.
+     */
+    static boolean legacyCompare(String currentVersion, String latestVersion) {
+        try {
+            String current = currentVersion.trim().replaceAll("[^0-9.]", "");
+            String latest = latestVersion.trim().replaceAll("[^0-9.]", "");
+            if (current.isEmpty() || latest.isEmpty()) return false;
+            return Double.parseDouble(joinAfterFirstDot(current)) < Double.parseDouble(joinAfterFirstDot(latest));
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private static String joinAfterFirstDot(String version) {
+        if (!version.contains(".")) return version;
+        String[] parts = version.split("\\.");
+        StringBuilder builder = new StringBuilder(parts[0] + ".");
+        for (int i = 1; i < parts.length; i++)
+            builder.append(parts[i]);
+        return builder.toString();
+    }
+
+    private interface Comparison {
+        boolean compare(String current, String latest);
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2021 Osiris-Team.
+ * All rights reserved.
+ *
+ * This software is copyrighted work, licensed under the terms
+ * of the MIT-License. Consult the "LICENSE" file for details.
+ */
+
+package com.osiris.SPPU.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Ordering choices, that the corpus below relies on: <br>
+ * - A dash followed by a digit continues the numeric segments, thus 1.0-2 is 1.0.2 and newer than 1.0.1,
+ * and dates like 2021-05-12 compare as 2021.5.12. <br>
+ * - SNAPSHOT/dev/nightly, alpha, beta and pre/rc are qualifiers, which rank below the release of the same version
+ * (1.0-SNAPSHOT is older than 1.0). <br>
+ * - Other words are ignored together with the numbers after them, thus 1.16.5-R0.1 equals 1.16.5 and
+ * 'v1.8.8 for MC 1.16' equals 1.8.8. <br>
+ * - b45, build 45 and #45 are build numbers, which rank above the same version without build number.
+ */
+class VersionTest {
+
+    /**
+     * Versions as they appear in plugin.yml files and on spigotmc.org, each pair ordered from older to newer.
+     */
+    private static final String[][] OLDER_NEWER = {
+            {"1.0", "1.1"},
+            {"1.9", "1.10"},
+            {"1.2", "1.10.1"},
+            {"2.3.1", "2.3.2"},
+            {"4.7.0", "5.0"},
+            {"v1.8.8", "v1.9"},
+            {"1.0.0-SNAPSHOT", "1.0.0"},
+            {"1.0-SNAPSHOT", "1.0-alpha"},
+            {"1.0-alpha", "1.0-beta"},
+            {"1.0-beta", "1.0-rc1"},
+            {"1.0-rc1", "1.0"},
+            {"1.0-beta-2", "1.0-beta-10"},
+            {"1.0-pre3", "1.0-pre4"},
+            {"2.0-dev", "2.0"},
+            {"1.0-beta-SNAPSHOT", "1.0-beta"},
+            {"2.3.1", "2.3.1-b45"},
+            {"2.3.1-b45", "2.3.1-b46"},
+            {"2.3.1-b45", "2.3.2"},
+            {"5.0.0-SNAPSHOT-b45", "5.0.0"},
+            {"5.0.0-SNAPSHOT-b45", "5.0.0-SNAPSHOT-b46"},
+            {"1.2.3 build 99", "1.2.3 build 100"},
+            {"1.2.3 #99", "1.2.3 #100"},
+            {"1.2.3 (45)", "1.2.3 (46)"},
+            {"2021-05-12", "2021-05-13"},
+            {"2021-05-31", "2021-06-01"},
+            {"2021-12-31", "2022-01-01"},
+            {"1.0.1", "1.0-2"}, // Dash and digit continue the segments
+            {"1.0-2", "1.0.3"},
+            {"1.16.5-R0.1", "1.17"},
+            {"3.4.2-release", "3.5.0"},
+            {"Release 1.3", "Release 1.4"},
+    };
+
+    /**
+     * Different ways of writing the same version.
+     */
+    private static final String[][] EQUAL = {
+            {"1.2", "1.2.0"},
+            {"1.2.0.0", "1.2"},
+            {"v2.3.1", "2.3.1"},
+            {"2.3.1-RELEASE", "2.3.1"},
+            {"1.0-BETA", "1.0-beta"},
+            {"v1.8.8 for MC 1.16", "1.8.8"},
+            {"1.8.8 (Minecraft 1.17)", "1.8.8"},
+            {"2.3.1-b45", "2.3.1 build 45"},
+            {"2.3.1-b45", "2.3.1 #45"},
+            {"2021-05-12", "2021.5.12"},
+            {"1.0-2", "1.0.2"},
+            {"1.16.5-R0.1", "1.16.5"}, // Unknown word, the number after it is ignored
+    };
+
+    @Test
+    void compareOrderedVersions() {
+        for (String[] pair : OLDER_NEWER) {
+            Version older = Version.parse(pair[0]);
+            Version newer = Version.parse(pair[1]);
+            assertNotNull(older, pair[0]);
+            assertNotNull(newer, pair[1]);
+            assertTrue(older.compareTo(newer) < 0, pair[0] + " should be older than " + pair[1]);
+            assertTrue(newer.compareTo(older) > 0, pair[1] + " should be newer than " + pair[0]);
+        }
+    }
+
+    @Test
+    void compareEqualVersions() {
+        for (String[] pair : EQUAL) {
+            Version a = Version.parse(pair[0]);
+            Version b = Version.parse(pair[1]);
+            assertNotNull(a, pair[0]);
+            assertNotNull(b, pair[1]);
+            assertEquals(0, a.compareTo(b), pair[0] + " should equal " + pair[1]);
+            assertEquals(a, b);
+            assertEquals(a.hashCode(), b.hashCode());
+        }
+    }
+
+    @Test
+    void parseBuildNumber() {
+        Version version = Version.parse("2.3.1-b45");
+        assertNotNull(version);
+        assertEquals(Version.RELEASE, version.getQualifier());
+        assertEquals(45, version.getBuild());
+    }
+
+    @Test
+    void parseDate() {
+        Version version = Version.parse("2021-05-12");
+        assertNotNull(version);
+        assertEquals(3, version.getSegmentsCount());
+        assertEquals(2021, version.getSegment(0));
+        assertEquals(5, version.getSegment(1));
+        assertEquals(12, version.getSegment(2));
+        assertEquals(0, version.getBuild());
+    }
+
+    @Test
+    void ignoreNumbersInFreeText() {
+        Version version = Version.parse("v1.8.8 for MC 1.16");
+        assertNotNull(version);
+        assertEquals(3, version.getSegmentsCount());
+        assertEquals(0, version.getBuild());
+    }
+
+    @Test
+    void parseQualifierNumber() {
+        Version version = Version.parse("1.0-beta-3");
+        assertNotNull(version);
+        assertEquals(Version.BETA, version.getQualifier());
+        assertEquals(3, version.getQualifierNumber());
+        assertEquals(0, version.getBuild());
+    }
+
+    @Test
+    void parseWithoutNumber() {
+        assertNull(Version.parse("latest"));
+        assertNull(Version.parse(""));
+    }
+
+    @Test
+    void compareWithUtilsVersion() {
+        UtilsVersion utils = new UtilsVersion();
+        assertTrue(utils.compare("2.3.1", "2.3.1-b45"));
+        assertFalse(utils.compare("2.3.1-b45", "2.3.1"));
+        assertFalse(utils.compare("v1.8.8 for MC 1.16", "1.8.8"));
+    }
+}